@@ -0,0 +1,109 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out through {@link Call#enqueue}: a batch of asynchronous calls against a {@link
+ * MockWebServer} that answers after 10 ms, on OkHttp's default cached thread pool and on {@link
+ * VirtualThreadDispatchers}, with the same dispatcher limits.
+ *
+ * <p>{@code VIRTUAL} needs Java 21 or later.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="Enqueue -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnqueueBenchmark {
+
+    public enum Threads {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param
+    Threads threads;
+
+    @Param({"256"})
+    int fanOut;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private Request request;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                return new MockResponse().setBody("{\"id\":8812}").setBodyDelay(10, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        request = new Request.Builder().url(server.url("/users/8812")).build();
+
+        Dispatcher dispatcher;
+        if (threads == Threads.VIRTUAL) {
+            dispatcher = VirtualThreadDispatchers.create(fanOut, fanOut);
+        } else {
+            dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(fanOut);
+            dispatcher.setMaxRequestsPerHost(fanOut);
+        }
+        client = new OkHttpClient.Builder().dispatcher(dispatcher).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public long fanOut() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(fanOut);
+        long[] bytes = new long[1];
+        Callback callback = new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (Response r = response) {
+                    synchronized (bytes) {
+                        bytes[0] += r.body().bytes().length;
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < fanOut; i++) {
+            client.newCall(request).enqueue(callback);
+        }
+        latch.await();
+        return bytes[0];
+    }
+
+}
@@ -0,0 +1,88 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering one event through {@link InstrumentedEventListener} to its delegates.
+ *
+ * <p>Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is expected to be {@code ≈ 0 B/op} for
+ * every delegate count, i.e. neither recording nor forwarding an event allocates.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="EventListenerFanOut -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventListenerFanOutBenchmark {
+
+    @Param({"0", "1", "3"})
+    int delegates;
+
+    private Call call;
+    private Request request;
+    private EventListener listener;
+
+    @Setup
+    public void setup() {
+        request = new Request.Builder().url("http://localhost/").build();
+        call = new OkHttpClient().newCall(request);
+        EventListener.Factory[] factories = new EventListener.Factory[delegates];
+        for (int i = 0; i < delegates; i++) {
+            SinkEventListener sink = new SinkEventListener();
+            factories[i] = c -> sink;
+        }
+        listener = new InstrumentedEventListenerFactory(new SimpleMeterRegistry(), factories).create(call);
+    }
+
+    @Benchmark
+    public void requestHeadersStart() {
+        listener.requestHeadersStart(call);
+    }
+
+    @Benchmark
+    public void requestHeadersEnd() {
+        listener.requestHeadersEnd(call, request);
+    }
+
+    @Benchmark
+    public void responseBodyEnd() {
+        listener.responseBodyEnd(call, 1024);
+    }
+
+    /**
+     * A delegate that only counts, standing in for {@code OkHttpMetricsEventListener}.
+     */
+    static final class SinkEventListener extends EventListener {
+
+        long events;
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            events++;
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            events++;
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            events += byteCount;
+        }
+
+    }
+
+}
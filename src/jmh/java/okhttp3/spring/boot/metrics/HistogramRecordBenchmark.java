@@ -0,0 +1,59 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link Timer#record(long, TimeUnit)} on an OkHttp3 timer in every {@link
+ * HistogramMode}, on a {@link PrometheusMeterRegistry}.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="HistogramRecord"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistogramRecordBenchmark {
+
+    @Param
+    HistogramMode mode;
+
+    private Timer timer;
+
+    @Setup
+    public void setup() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        HistogramStrategy.Settings settings = HistogramStrategy.Settings.defaults();
+        settings.setMode(mode);
+        registry.config().meterFilter(new HistogramStrategy(settings));
+        // a timer without a distribution of its own, so only the mode decides
+        timer = Timer.builder(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION).register(registry);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void record1Thread() {
+        record();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void record8Threads() {
+        record();
+    }
+
+    private void record() {
+        // 200 µs to 200 ms, spread over the buckets
+        timer.record(ThreadLocalRandom.current().nextLong(200_000L, 200_000_000L), TimeUnit.NANOSECONDS);
+    }
+
+}
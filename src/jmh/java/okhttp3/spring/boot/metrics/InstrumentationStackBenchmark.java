@@ -0,0 +1,142 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of the instrumentation stack: calls against a local {@link MockWebServer} with a
+ * bare client and with each instrumentation layer added.
+ *
+ * <ul>
+ *   <li>{@code RAW}: a plain {@link OkHttpClient};</li>
+ *   <li>{@code INTERCEPTOR}: only {@link InstrumentedInterceptor};</li>
+ *   <li>{@code EVENT_LISTENER}: only the {@link InstrumentedEventListenerFactory};</li>
+ *   <li>{@code FULL}: {@link InstrumentedOkHttpClients#create(MeterRegistry, OkHttpClient)}, including
+ *   {@code OkHttpObservationInterceptor} and {@code OkHttpMetricsEventListener};</li>
+ *   <li>{@code UNIFIED}: {@link InstrumentationMode#UNIFIED};</li>
+ *   <li>{@code UNIFIED_SAMPLED}: the same, with the phase timers of 1% of the calls, see {@link
+ *   CallSampler}.</li>
+ * </ul>
+ *
+ * <p>Reports throughput and the latency distribution at 1, 8 and 64 threads; add {@code -prof gc}
+ * for the allocation rate per call.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="InstrumentationStack -prof gc"
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentationStackBenchmark {
+
+    public enum Stack {
+        RAW, INTERCEPTOR, EVENT_LISTENER, FULL, UNIFIED, UNIFIED_SAMPLED
+    }
+
+    @Param
+    Stack stack;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private Request request;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recordedRequest) {
+                return new MockResponse().setBody("{\"id\":8812}");
+            }
+        });
+        server.start();
+        HttpUrl url = server.url("/users/8812");
+        request = new Request.Builder().url(url).build();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(128);
+        dispatcher.setMaxRequestsPerHost(128);
+        OkHttpClient raw = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(128, 5, TimeUnit.MINUTES))
+                .build();
+        MeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        switch (stack) {
+            case INTERCEPTOR:
+                client = raw.newBuilder()
+                        .addNetworkInterceptor(new InstrumentedInterceptor(registry, Collections.emptyList()))
+                        .build();
+                break;
+            case EVENT_LISTENER:
+                client = raw.newBuilder()
+                        .eventListenerFactory(new InstrumentedEventListenerFactory(registry, raw.eventListenerFactory()))
+                        .build();
+                break;
+            case FULL:
+                client = InstrumentedOkHttpClients.create(registry, raw);
+                break;
+            case UNIFIED:
+                client = InstrumentedOkHttpClients.builder(registry, raw).mode(InstrumentationMode.UNIFIED).build();
+                break;
+            case UNIFIED_SAMPLED:
+                CallSampler.Settings sampling = new CallSampler.Settings();
+                sampling.setRate(0.01);
+                client = InstrumentedOkHttpClients.builder(registry, raw).mode(InstrumentationMode.UNIFIED)
+                        .sampling(sampling).build();
+                break;
+            default:
+                client = raw;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String call1Thread() throws IOException {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String call8Threads() throws IOException {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String call64Threads() throws IOException {
+        return call();
+    }
+
+    private String call() throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+}
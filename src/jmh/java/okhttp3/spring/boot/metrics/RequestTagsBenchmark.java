@@ -0,0 +1,68 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving the tags and the request timer of a finished call in {@link
+ * InstrumentationMode#UNIFIED}, against building the {@link Tags} and looking the timer up in the
+ * registry on every call.
+ *
+ * <p>With {@code -prof gc}, {@code cached} is expected to allocate only what the uri mapper does
+ * (the encoded path).
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="RequestTags -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestTagsBenchmark {
+
+    private SimpleMeterRegistry registry;
+    private UnifiedCallRecorder recorder;
+    private Request request;
+    private Response response;
+
+    @Setup
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        recorder = new UnifiedCallRecorder(registry, ObservationRegistry.NOOP,
+                Collections.singletonList(Tag.of("application", "orders")), Collections.emptyList(),
+                UrlMapperEnum.ENCODED_PATH.get(), false);
+        request = new Request.Builder().url("http://users.internal:8080/users/me").build();
+        response = new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").build();
+    }
+
+    @Benchmark
+    public void cached() {
+        recorder.callEnd(request, response, null, 250_000L, null, true);
+    }
+
+    @Benchmark
+    public void uncached() {
+        registry.timer(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX, Tags.of(
+                "method", request.method(),
+                "uri", request.url().encodedPath(),
+                "status", Integer.toString(response.code()),
+                "target.scheme", request.url().scheme(),
+                "target.host", request.url().host(),
+                "target.port", Integer.toString(request.url().port()))
+                .and("application", "orders"))
+                .record(250_000L, TimeUnit.NANOSECONDS);
+    }
+
+}
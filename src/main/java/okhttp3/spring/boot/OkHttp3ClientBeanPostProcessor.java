@@ -0,0 +1,39 @@
+package okhttp3.spring.boot;
+
+import okhttp3.OkHttpClient;
+import okhttp3.spring.boot.metrics.InstrumentedOkHttpClients;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Instruments every {@link OkHttpClient} bean of the context that is not instrumented yet, such
+ * as the clients of Retrofit or Feign starters, with the options of {@link
+ * OkHttp3MetricsProperties}; the meters of a client are tagged with its bean name as {@code
+ * client}.
+ *
+ * <p>Clients created by this starter, and clients derived from them with {@link
+ * OkHttpClient#newBuilder()}, are left as they are, see {@link
+ * InstrumentedOkHttpClients#isInstrumented(OkHttpClient)}.
+ *
+ * @author wandl
+ */
+public class OkHttp3ClientBeanPostProcessor implements BeanPostProcessor {
+
+	private final ObjectProvider<OkHttp3ClientFactory> clientFactoryProvider;
+
+	public OkHttp3ClientBeanPostProcessor(ObjectProvider<OkHttp3ClientFactory> clientFactoryProvider) {
+		this.clientFactoryProvider = clientFactoryProvider;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (!(bean instanceof OkHttpClient) || InstrumentedOkHttpClients.isInstrumented((OkHttpClient) bean)) {
+			return bean;
+		}
+		OkHttp3ClientFactory clientFactory = clientFactoryProvider.getObject();
+		OkHttpClient client = clientFactory.instrument((OkHttpClient) bean, beanName);
+		clientFactory.bindPoolMetrics(client, beanName);
+		return client;
+	}
+
+}
@@ -0,0 +1,190 @@
+package okhttp3.spring.boot;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.spring.boot.metrics.HistogramStrategy;
+import okhttp3.spring.boot.metrics.InstrumentedDns;
+import okhttp3.spring.boot.metrics.InstrumentedOkHttpClients;
+import okhttp3.spring.boot.metrics.OkHttp3Metrics;
+import okhttp3.spring.boot.metrics.OkHttpCacheMetrics;
+import okhttp3.spring.boot.metrics.OkHttpDispatcherMetrics;
+import okhttp3.spring.boot.metrics.UriTemplateMapper;
+import okhttp3.spring.boot.metrics.UrlMapperEnum;
+import okhttp3.spring.boot.metrics.VirtualThreadDispatchers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Creates the instrumented clients of {@link OkHttp3MetricsProperties}: the {@code okhttp3Client}
+ * bean and every named client of {@link OkHttp3MetricsProperties#getClients()}.
+ *
+ * <p>A named client is built from a fresh {@link OkHttpClient.Builder}, so it shares neither the
+ * connection pool, the dispatcher nor the interceptors of the {@code okhttp3Builder} bean; its
+ * pool, dispatcher and cache metrics are bound here, tagged with its name.
+ *
+ * @author wandl
+ */
+public class OkHttp3ClientFactory implements AutoCloseable {
+
+	private final MeterRegistry registry;
+	private final ObservationRegistry observationRegistry;
+	private final OkHttp3MetricsProperties metricsProperties;
+	private final List<BiFunction<Request, Response, KeyValue>> contextSpecificTags;
+	private final Function<Request, String> urlMapper;
+	private final List<OkHttpClient> namedClients = new ArrayList<>();
+	private final List<OkHttpCacheMetrics> cacheMetrics = new ArrayList<>();
+	private final List<InstrumentedDns> dnsResolvers = new ArrayList<>();
+
+	public OkHttp3ClientFactory(MeterRegistry registry, OkHttp3MetricsProperties metricsProperties,
+								List<BiFunction<Request, Response, KeyValue>> contextSpecificTags) {
+		this(registry, ObservationRegistry.NOOP, metricsProperties, contextSpecificTags);
+	}
+
+	/**
+	 * @param observationRegistry the registry of the observations of every call, usually the one of the
+	 * application, so its tracing handler creates a span per call
+	 */
+	public OkHttp3ClientFactory(MeterRegistry registry, ObservationRegistry observationRegistry,
+								OkHttp3MetricsProperties metricsProperties,
+								List<BiFunction<Request, Response, KeyValue>> contextSpecificTags) {
+		this.registry = registry;
+		this.observationRegistry = observationRegistry;
+		this.metricsProperties = metricsProperties;
+		this.contextSpecificTags = contextSpecificTags;
+		this.urlMapper = urlMapper(metricsProperties);
+	}
+
+	private static Function<Request, String> urlMapper(OkHttp3MetricsProperties metricsProperties) {
+		if (metricsProperties.getUrlMapper() == UrlMapperEnum.URI_TEMPLATE) {
+			return new UriTemplateMapper(metricsProperties.getUriTemplates(), metricsProperties.getUriTemplateCacheSize());
+		}
+		return metricsProperties.getUrlMapper().get();
+	}
+
+	/**
+	 * The tags of the pool, dispatcher and cache metrics of the client named {@code clientName}.
+	 */
+	public static Tags poolTags(OkHttp3MetricsProperties metricsProperties, String clientName) {
+		Tags tags = Tags.empty();
+		for (Map.Entry<String, String> tag : metricsProperties.getExtraTags().entrySet()) {
+			tags = tags.and(tag.getKey(), tag.getValue());
+		}
+		return tags.and(HistogramStrategy.CLIENT_TAG, clientName);
+	}
+
+	/**
+	 * Creates the named client {@code name} of {@link OkHttp3MetricsProperties#getClients()}.
+	 */
+	public synchronized OkHttpClient create(String name) {
+		OkHttp3ClientProperties clientProperties = metricsProperties.getClients().get(name);
+		if (clientProperties == null) {
+			throw new IllegalArgumentException("No client named " + name);
+		}
+		Dispatcher dispatcher;
+		if (metricsProperties.isVirtualThreads()) {
+			dispatcher = VirtualThreadDispatchers.create(clientProperties.getMaxRequests(), clientProperties.getMaxRequestsPerHost());
+		} else {
+			dispatcher = new Dispatcher();
+			dispatcher.setMaxRequests(clientProperties.getMaxRequests());
+			dispatcher.setMaxRequestsPerHost(clientProperties.getMaxRequestsPerHost());
+		}
+		OkHttpClient.Builder builder = new OkHttpClient.Builder()
+				.connectTimeout(clientProperties.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+				.readTimeout(clientProperties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+				.writeTimeout(clientProperties.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)
+				.callTimeout(clientProperties.getCallTimeout().toMillis(), TimeUnit.MILLISECONDS)
+				.connectionPool(new ConnectionPool(clientProperties.getMaxIdleConnections(),
+						clientProperties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+				.dispatcher(dispatcher);
+		if (clientProperties.getCacheDirectory() != null) {
+			builder.cache(new Cache(new File(clientProperties.getCacheDirectory()), clientProperties.getCacheMaxSize()));
+		}
+		OkHttpClient client = instrument(builder.build(), name, true);
+		bindPoolMetrics(client, name);
+		namedClients.add(client);
+		return client;
+	}
+
+	/**
+	 * Binds the connection pool, dispatcher and cache metrics of a client that is not the {@code
+	 * okhttp3Client} bean, tagged with {@code clientName}.
+	 */
+	public synchronized void bindPoolMetrics(OkHttpClient client, String clientName) {
+		Tags tags = poolTags(metricsProperties, clientName);
+		new OkHttpConnectionPoolMetrics(client.connectionPool(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX, tags).bindTo(registry);
+		new OkHttpDispatcherMetrics(client, OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX, tags).bindTo(registry);
+		OkHttpCacheMetrics cache = new OkHttpCacheMetrics(client, OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX, tags,
+				metricsProperties.getCacheRefreshInterval());
+		cache.bindTo(registry);
+		cacheMetrics.add(cache);
+	}
+
+	/**
+	 * Applies the Dns and the instrumentation of {@link OkHttp3MetricsProperties} to {@code client},
+	 * except the dispatcher instrumentation, which would replace a dispatcher others may reference.
+	 */
+	public OkHttpClient instrument(OkHttpClient client, String clientName) {
+		return instrument(client, clientName, false);
+	}
+
+	/**
+	 * Applies the Dns and the instrumentation of {@link OkHttp3MetricsProperties} to {@code client}.
+	 *
+	 * @param ownsDispatcher whether the dispatcher of {@code client} was created by this starter and
+	 *                       may be replaced by an instrumented copy
+	 */
+	public synchronized OkHttpClient instrument(OkHttpClient client, String clientName, boolean ownsDispatcher) {
+		if (metricsProperties.getDns().isEnabled()) {
+			InstrumentedDns dns = new InstrumentedDns(registry, client.dns(), poolTags(metricsProperties, clientName), metricsProperties.getDns());
+			dnsResolvers.add(dns);
+			client = client.newBuilder().dns(dns).build();
+		}
+		return InstrumentedOkHttpClients.builder(registry, client)
+				.clientName(clientName)
+				.extraTags(metricsProperties.getExtraTags())
+				.requestTagKeys(metricsProperties.getRequestTagKeys())
+				.contextSpecificTags(contextSpecificTags)
+				.urlMapper(urlMapper)
+				.includeHostTag(metricsProperties.isIncludeHostTag())
+				.mode(metricsProperties.getMode())
+				.observationRegistry(observationRegistry)
+				.instrumentDispatcher(ownsDispatcher && metricsProperties.isInstrumentDispatcher())
+				.sampling(metricsProperties.getSampling())
+				.concurrencyLimit(metricsProperties.getConcurrencyLimit().isEnabled() ? metricsProperties.getConcurrencyLimit() : null)
+				.build();
+	}
+
+	/**
+	 * Stops the cache metrics, the refresh threads of the caching Dns and the dispatchers of the
+	 * named clients.
+	 */
+	@Override
+	public synchronized void close() {
+		for (OkHttpCacheMetrics cache : cacheMetrics) {
+			cache.close();
+		}
+		for (InstrumentedDns dns : dnsResolvers) {
+			dns.close();
+		}
+		for (OkHttpClient client : namedClients) {
+			client.dispatcher().executorService().shutdown();
+			client.connectionPool().evictAll();
+		}
+	}
+
+}
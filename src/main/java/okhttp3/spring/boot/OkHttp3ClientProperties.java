@@ -0,0 +1,64 @@
+package okhttp3.spring.boot;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * The connection pool, dispatcher, cache and timeouts of a named client, see {@link
+ * OkHttp3MetricsProperties#getClients()}.
+ */
+@Data
+public class OkHttp3ClientProperties {
+
+	/**
+	 * Connect timeout; zero means no timeout.
+	 */
+	private Duration connectTimeout = Duration.ofSeconds(10);
+
+	/**
+	 * Read timeout; zero means no timeout.
+	 */
+	private Duration readTimeout = Duration.ofSeconds(10);
+
+	/**
+	 * Write timeout; zero means no timeout.
+	 */
+	private Duration writeTimeout = Duration.ofSeconds(10);
+
+	/**
+	 * Timeout of a whole call; zero means no timeout.
+	 */
+	private Duration callTimeout = Duration.ZERO;
+
+	/**
+	 * Maximum number of idle connections kept in the pool of this client.
+	 */
+	private int maxIdleConnections = 5;
+
+	/**
+	 * How long an idle connection is kept in the pool.
+	 */
+	private Duration keepAlive = Duration.ofMinutes(5);
+
+	/**
+	 * Max requests of the dispatcher of this client.
+	 */
+	private int maxRequests = 64;
+
+	/**
+	 * Max requests per host of the dispatcher of this client.
+	 */
+	private int maxRequestsPerHost = 5;
+
+	/**
+	 * Directory of the HTTP cache of this client; no cache when unset.
+	 */
+	private String cacheDirectory;
+
+	/**
+	 * Maximum size of the HTTP cache in bytes.
+	 */
+	private long cacheMaxSize = 10L * 1024 * 1024;
+
+}
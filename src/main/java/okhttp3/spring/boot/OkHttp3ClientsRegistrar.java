@@ -0,0 +1,52 @@
+package okhttp3.spring.boot;
+
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.AutowireCandidateQualifier;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Registers an {@link OkHttpClient} bean named {@code <name>OkHttp3Client}, qualified with {@code
+ * <name>}, for every client of {@code okhttp3.metrics.clients}; each is created by {@link
+ * OkHttp3ClientFactory#create(String)}.
+ *
+ * @author wandl
+ */
+class OkHttp3ClientsRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+
+	static final String BEAN_NAME_SUFFIX = "OkHttp3Client";
+
+	private Environment environment;
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	@Override
+	public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+		Map<String, OkHttp3ClientProperties> clients = Binder.get(environment)
+				.bind(OkHttp3MetricsProperties.PREFIX + ".clients", Bindable.mapOf(String.class, OkHttp3ClientProperties.class))
+				.orElse(Collections.emptyMap());
+		for (String name : clients.keySet()) {
+			AbstractBeanDefinition definition = BeanDefinitionBuilder.genericBeanDefinition(OkHttpClient.class)
+					.setFactoryMethodOnBean("create", "okhttp3ClientFactory")
+					.addConstructorArgValue(name)
+					.getBeanDefinition();
+			definition.addQualifier(new AutowireCandidateQualifier(Qualifier.class, name));
+			registry.registerBeanDefinition(name + BEAN_NAME_SUFFIX, definition);
+		}
+	}
+
+}
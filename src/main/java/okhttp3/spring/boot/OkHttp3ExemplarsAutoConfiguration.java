@@ -0,0 +1,114 @@
+package okhttp3.spring.boot;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exemplars.DefaultExemplarSampler;
+import io.prometheus.client.exemplars.ExemplarSampler;
+import io.prometheus.client.exemplars.tracer.common.SpanContextSupplier;
+import okhttp3.spring.boot.actuate.OpenMetricsScrapeEndpoint;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.prometheus.PrometheusMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Prometheus exemplars, opt-in with {@code okhttp3.metrics.exemplars=true}: an {@link ExemplarSampler} bean that
+ * attaches the trace and span ids of the {@link SpanContextSupplier} bean of the application to histogram buckets,
+ * e.g. of {@code okhttp3.requests}, and the {@link OpenMetricsScrapeEndpoint} that publishes them.
+ *
+ * <p>Spring Boot 2.3 creates its {@link PrometheusMeterRegistry} without an {@link ExemplarSampler}, so the
+ * application wires the sampler into its own registry, which Boot then backs off for:
+ *
+ * <pre class="code">
+ * &#064;Bean
+ * public PrometheusMeterRegistry prometheusMeterRegistry(PrometheusConfig config, CollectorRegistry collectorRegistry,
+ *                                                        Clock clock, ExemplarSampler exemplarSampler) {
+ *     return new PrometheusMeterRegistry(config, collectorRegistry, clock, exemplarSampler);
+ * }
+ * </pre>
+ *
+ * <p>The {@link SpanContextSupplier} is looked up at the first exemplar rather than with a bean condition, so it
+ * may come from the application or from an auto-configuration processed after this one; without one no exemplars
+ * are attached. {@link DefaultExemplarSampler} only keeps the ids of sampled traces and replaces the exemplar of a
+ * bucket at most every few seconds, so recording stays allocation free in between. In UNIFIED mode the request
+ * timer of a call detailed by the {@code sampling} settings is recorded in the scope of its observation, so its
+ * exemplar is the span of the call; otherwise it is the span current at the end of the call.
+ *
+ * <p>Exemplars are only written in the OpenMetrics format, served at {@code /actuator/openmetrics}.
+ *
+ * @author wandl
+ */
+@AutoConfigureAfter(MetricsAutoConfiguration.class)
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass({ PrometheusMeterRegistry.class, SpanContextSupplier.class, PrometheusMetricsExportAutoConfiguration.class })
+@ConditionalOnProperty(prefix = "management.metrics.export.prometheus", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class OkHttp3ExemplarsAutoConfiguration {
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnProperty(prefix = OkHttp3MetricsProperties.PREFIX, name = "exemplars", havingValue = "true")
+	static class ExemplarsConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public ExemplarSampler okhttp3ExemplarSampler(ObjectProvider<SpanContextSupplier> spanContextSupplierProvider) {
+			return new DefaultExemplarSampler(new LazySpanContextSupplier(spanContextSupplierProvider));
+		}
+
+		@Bean
+		@ConditionalOnMissingBean
+		@ConditionalOnAvailableEndpoint
+		public OpenMetricsScrapeEndpoint openMetricsScrapeEndpoint(CollectorRegistry collectorRegistry) {
+			return new OpenMetricsScrapeEndpoint(collectorRegistry);
+		}
+
+	}
+
+	/**
+	 * The {@link SpanContextSupplier} bean, resolved when the first exemplar is sampled; reports no
+	 * sampled span while there is none.
+	 */
+	static final class LazySpanContextSupplier implements SpanContextSupplier {
+
+		private final ObjectProvider<SpanContextSupplier> provider;
+		private volatile SpanContextSupplier delegate;
+
+		LazySpanContextSupplier(ObjectProvider<SpanContextSupplier> provider) {
+			this.provider = provider;
+		}
+
+		private SpanContextSupplier delegate() {
+			SpanContextSupplier delegate = this.delegate;
+			if (delegate == null) {
+				delegate = provider.getIfAvailable();
+				this.delegate = delegate;
+			}
+			return delegate;
+		}
+
+		@Override
+		public String getTraceId() {
+			SpanContextSupplier delegate = delegate();
+			return delegate == null ? null : delegate.getTraceId();
+		}
+
+		@Override
+		public String getSpanId() {
+			SpanContextSupplier delegate = delegate();
+			return delegate == null ? null : delegate.getSpanId();
+		}
+
+		@Override
+		public boolean isSampled() {
+			SpanContextSupplier delegate = delegate();
+			return delegate != null && delegate.isSampled();
+		}
+
+	}
+
+}
@@ -1,14 +1,18 @@
 package okhttp3.spring.boot;
 
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
 import io.micrometer.core.instrument.binder.okhttp3.OkHttpObservationInterceptor;
+import io.micrometer.observation.ObservationRegistry;
 import okhttp3.OkHttpClient;
-import okhttp3.spring.boot.metrics.InstrumentedOkHttpClients;
+import okhttp3.spring.boot.metrics.CardinalityLimitMeterFilter;
+import okhttp3.spring.boot.metrics.HistogramStrategy;
+import okhttp3.spring.boot.metrics.OKhttp3MetricsSpecificTagHandler;
 import okhttp3.spring.boot.metrics.OkHttp3Metrics;
 import okhttp3.spring.boot.metrics.OkHttpCacheMetrics;
+import okhttp3.spring.boot.metrics.OkHttpConnectionWarmer;
 import okhttp3.spring.boot.metrics.OkHttpDispatcherMetrics;
+import okhttp3.spring.boot.metrics.VirtualThreadDispatchers;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -19,9 +23,9 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.util.CollectionUtils;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
 
-import java.util.ArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -33,8 +37,22 @@ import java.util.stream.Collectors;
 @ConditionalOnClass({ MeterRegistry.class, OkHttpClient.class, OkHttpConnectionPoolMetrics.class , OkHttpObservationInterceptor.class  })
 @ConditionalOnBean(MeterRegistry.class)
 @EnableConfigurationProperties({ OkHttp3MetricsProperties.class })
+@Import(OkHttp3ClientsRegistrar.class)
 public class OkHttp3MetricsAutoConfiguration {
 
+	@Bean
+	@ConditionalOnMissingBean
+	public HistogramStrategy okhttp3HistogramStrategy(OkHttp3MetricsProperties metricsProperties) {
+		return new HistogramStrategy(metricsProperties.getHistogram(), metricsProperties.getMeterHistograms(),
+				metricsProperties.getClientHistograms());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public CardinalityLimitMeterFilter okhttp3CardinalityLimitMeterFilter(OkHttp3MetricsProperties metricsProperties) {
+		return new CardinalityLimitMeterFilter(metricsProperties.getMaxTagValues());
+	}
+
 	@Bean
 	@ConditionalOnMissingBean
 	public okhttp3.OkHttpClient.Builder okhttp3Builder(){
@@ -42,28 +60,63 @@ public class OkHttp3MetricsAutoConfiguration {
 	}
 
 	@Bean
+	public OkHttp3ClientFactory okhttp3ClientFactory(ObjectProvider<MeterRegistry> meterRegistryProvider,
+													 ObjectProvider<ObservationRegistry> observationRegistryProvider,
+													 ObjectProvider<OKhttp3MetricsSpecificTagHandler> specificTagHandlerProvider,
+													 OkHttp3MetricsProperties metricsProperties) {
+		return new OkHttp3ClientFactory(meterRegistryProvider.getObject(),
+				observationRegistryProvider.getIfAvailable(() -> ObservationRegistry.NOOP), metricsProperties,
+				specificTagHandlerProvider.orderedStream().map(OKhttp3MetricsSpecificTagHandler::getHandler).collect(Collectors.toList()));
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = OkHttp3MetricsProperties.PREFIX, name = "instrument-all-clients", havingValue = "true", matchIfMissing = true)
+	public static OkHttp3ClientBeanPostProcessor okhttp3ClientBeanPostProcessor(ObjectProvider<OkHttp3ClientFactory> okhttp3ClientFactoryProvider) {
+		return new OkHttp3ClientBeanPostProcessor(okhttp3ClientFactoryProvider);
+	}
+
+	@Bean
+	@Primary
 	public OkHttpClient okhttp3Client(ObjectProvider<okhttp3.OkHttpClient.Builder> okhttp3BuilderProvider,
-									  ObjectProvider<MeterRegistry> meterRegistryProvider){
+									  OkHttp3ClientFactory okhttp3ClientFactory,
+									  OkHttp3MetricsProperties metricsProperties){
 		OkHttpClient okhttp3Client = okhttp3BuilderProvider.getObject().build();
-		return InstrumentedOkHttpClients.create(meterRegistryProvider.getObject(), okhttp3Client);
+		if (metricsProperties.isVirtualThreads()) {
+			okhttp3Client = okhttp3Client.newBuilder()
+					.dispatcher(VirtualThreadDispatchers.create(metricsProperties.getVirtualThreadMaxRequests(),
+							metricsProperties.getVirtualThreadMaxRequestsPerHost()))
+					.build();
+		}
+		return okhttp3ClientFactory.instrument(okhttp3Client, metricsProperties.getClientName(), metricsProperties.isVirtualThreads());
+	}
+
+	@Bean
+	public OkHttpCacheMetrics okHttp3CacheMetrics(ObjectProvider<OkHttpClient> okhttp3ClientProvider,
+												  OkHttp3MetricsProperties metricsProperties) {
+		return new OkHttpCacheMetrics(okhttp3ClientProvider.getObject(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX,
+				OkHttp3ClientFactory.poolTags(metricsProperties, metricsProperties.getClientName()), metricsProperties.getCacheRefreshInterval());
 	}
 
 	@Bean
-	public OkHttpCacheMetrics okHttp3CacheMetrics(ObjectProvider<OkHttpClient> okhttp3ClientProvider) {
-		return new OkHttpCacheMetrics(okhttp3ClientProvider.getObject(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX);
+	public OkHttpDispatcherMetrics okHttp3DispatcherMetrics(ObjectProvider<OkHttpClient> okhttp3ClientProvider,
+															OkHttp3MetricsProperties metricsProperties) {
+		return new OkHttpDispatcherMetrics(okhttp3ClientProvider.getObject(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX,
+				OkHttp3ClientFactory.poolTags(metricsProperties, metricsProperties.getClientName()));
 	}
 
 	@Bean
-	public OkHttpDispatcherMetrics okHttp3DispatcherMetrics(ObjectProvider<OkHttpClient> okhttp3ClientProvider) {
-		return new OkHttpDispatcherMetrics(okhttp3ClientProvider.getObject(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX);
+	public OkHttpConnectionWarmer okHttp3ConnectionWarmer(ObjectProvider<OkHttpClient> okhttp3ClientProvider,
+														  OkHttp3MetricsProperties metricsProperties) {
+		return new OkHttpConnectionWarmer(okhttp3ClientProvider.getObject(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX,
+				OkHttp3ClientFactory.poolTags(metricsProperties, metricsProperties.getClientName()),
+				metricsProperties.getWarmupTargets(), metricsProperties.getWarmupTimeout());
 	}
 
 	@Bean
 	public OkHttpConnectionPoolMetrics okHttp3ConnectionPoolMetrics(ObjectProvider<OkHttpClient> okhttp3ClientProvider,
 																	OkHttp3MetricsProperties metricsProperties){
-		Iterable<Tag> extraTags = CollectionUtils.isEmpty(metricsProperties.getExtraTags()) ? new ArrayList<>()  : metricsProperties.getExtraTags()
-				.entrySet().stream().map(e -> Tag.of(e.getKey(), e.getValue())).collect(Collectors.toList());
-		return new OkHttpConnectionPoolMetrics(okhttp3ClientProvider.getObject().connectionPool(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX , extraTags);
+		return new OkHttpConnectionPoolMetrics(okhttp3ClientProvider.getObject().connectionPool(), OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX,
+				OkHttp3ClientFactory.poolTags(metricsProperties, metricsProperties.getClientName()));
 	}
 
 }
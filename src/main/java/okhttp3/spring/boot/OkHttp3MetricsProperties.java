@@ -1,8 +1,21 @@
 package okhttp3.spring.boot;
 
 import lombok.Data;
+import okhttp3.spring.boot.metrics.AdaptiveConcurrencyLimiter;
+import okhttp3.spring.boot.metrics.CallSampler;
+import okhttp3.spring.boot.metrics.CardinalityLimitMeterFilter;
+import okhttp3.spring.boot.metrics.HistogramStrategy;
+import okhttp3.spring.boot.metrics.InstrumentationMode;
+import okhttp3.spring.boot.metrics.InstrumentedDns;
+import okhttp3.spring.boot.metrics.OkHttpCacheMetrics;
+import okhttp3.spring.boot.metrics.OkHttpConnectionWarmer;
+import okhttp3.spring.boot.metrics.UriTemplateMapper;
+import okhttp3.spring.boot.metrics.UrlMapperEnum;
+import okhttp3.spring.boot.metrics.VirtualThreadDispatchers;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +34,22 @@ public class OkHttp3MetricsProperties {
 	 */
 	private boolean enabled = false;
 
+	/**
+	 * Value of the "client" tag of the okhttp3Client bean.
+	 */
+	private String clientName = "default";
+
+	/**
+	 * Named clients, each with its own connection pool, dispatcher and cache; their meters carry their name as
+	 * "client" tag, and the beans are injectable with @Qualifier of the name.
+	 */
+	private Map<String, OkHttp3ClientProperties> clients = new LinkedHashMap<>();
+
+	/**
+	 * Whether to instrument every other OkHttpClient bean of the context, tagged with its bean name as "client".
+	 */
+	private boolean instrumentAllClients = true;
+
 	/**
 	 * Extra tags for metrics.
 	 */
@@ -36,6 +65,107 @@ public class OkHttp3MetricsProperties {
 	 */
 	List<String> requestTagKeys;
 
+	/**
+	 * How requests are recorded: LAYERED (interceptors and event listener) or UNIFIED (a single event listener).
+	 */
+	private InstrumentationMode mode = InstrumentationMode.LAYERED;
+
+	/**
+	 * How the uri tag is derived from the request: ENCODED_PATH, FULL_URL, TOP_PRIVATE_DOMAIN or URI_TEMPLATE.
+	 */
+	private UrlMapperEnum urlMapper = UrlMapperEnum.ENCODED_PATH;
+
+	/**
+	 * Path templates of URI_TEMPLATE, e.g. "/users/{id}/orders/{id}"; unmatched paths get their IDs collapsed.
+	 */
+	private List<String> uriTemplates = new ArrayList<>();
+
+	/**
+	 * Maximum number of paths whose URI_TEMPLATE mapping is memoized.
+	 */
+	private int uriTemplateCacheSize = UriTemplateMapper.DEFAULT_CACHE_SIZE;
+
+	/**
+	 * Maximum number of distinct values per tag key of each OkHttp3 meter; further values are reported as OTHER.
+	 */
+	private int maxTagValues = CardinalityLimitMeterFilter.DEFAULT_MAX_TAG_VALUES;
+
+	/**
+	 * Whether to run asynchronous calls on virtual threads (Java 21+), one per call.
+	 */
+	private boolean virtualThreads = false;
+
+	/**
+	 * Max requests of the virtual thread dispatcher.
+	 */
+	private int virtualThreadMaxRequests = VirtualThreadDispatchers.DEFAULT_MAX_REQUESTS;
+
+	/**
+	 * Max requests per host of the virtual thread dispatcher.
+	 */
+	private int virtualThreadMaxRequestsPerHost = VirtualThreadDispatchers.DEFAULT_MAX_REQUESTS_PER_HOST;
+
+	/**
+	 * Whether to record how long asynchronous calls wait in the dispatcher; replaces the dispatcher with an
+	 * instrumented copy that keeps its limits but not its idle callback. Only applies to the clients whose
+	 * dispatcher this starter creates: the named clients, and the okhttp3Client with virtual threads.
+	 */
+	private boolean instrumentDispatcher = false;
+
+	/**
+	 * Whether to provide an ExemplarSampler bean that attaches the trace and span ids of a SpanContextSupplier
+	 * bean to histogram buckets, and the openmetrics endpoint that publishes them; the application passes the
+	 * sampler to its PrometheusMeterRegistry.
+	 */
+	private boolean exemplars = false;
+
+	/**
+	 * Fraction of calls whose phase timers and, in UNIFIED mode, context specific tags are recorded; slow and
+	 * failed calls always are. Call counts, failures, bytes and call durations are recorded for every call.
+	 */
+	private CallSampler.Settings sampling = new CallSampler.Settings();
+
+	/**
+	 * Adaptive (AIMD) concurrency limit per host; calls over the limit fail instead of waiting for a slot.
+	 */
+	private AdaptiveConcurrencyLimiter.Settings concurrencyLimit = new AdaptiveConcurrencyLimiter.Settings();
+
+	/**
+	 * Caching Dns of the client: TTL and negative caching, background refresh and stale addresses on resolver errors.
+	 */
+	private InstrumentedDns.Settings dns = new InstrumentedDns.Settings();
+
+	/**
+	 * Upstreams to open connections to at startup, each with its url and number of connections.
+	 */
+	private List<OkHttpConnectionWarmer.Target> warmupTargets = new ArrayList<>();
+
+	/**
+	 * How long startup waits at most for the warm-up connections.
+	 */
+	private Duration warmupTimeout = OkHttpConnectionWarmer.DEFAULT_TIMEOUT;
+
+	/**
+	 * How often the HTTP cache gauges are refreshed in the background; scrapes never touch the disk cache.
+	 */
+	private Duration cacheRefreshInterval = OkHttpCacheMetrics.DEFAULT_REFRESH_INTERVAL;
+
+	/**
+	 * Histogram of every OkHttp3 timer: NONE, PERCENTILES, HISTOGRAM (buckets from 1ms to 10s) or SLO. Unset by
+	 * default, which keeps the histogram buckets of okhttp3.network.requests.duration and no distribution on the
+	 * other timers.
+	 */
+	private HistogramStrategy.Settings histogram = HistogramStrategy.Settings.defaults();
+
+	/**
+	 * Histogram overrides by meter name, e.g. "[okhttp3.network.requests.duration]".
+	 */
+	private Map<String, HistogramStrategy.Settings> meterHistograms = new LinkedHashMap<>();
+
+	/**
+	 * Histogram overrides by value of the "client" tag.
+	 */
+	private Map<String, HistogramStrategy.Settings> clientHistograms = new LinkedHashMap<>();
 
 
 }
\ No newline at end of file
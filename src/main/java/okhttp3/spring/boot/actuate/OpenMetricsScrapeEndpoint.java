@@ -0,0 +1,37 @@
+package okhttp3.spring.boot.actuate;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * {@link WebEndpoint} that scrapes the {@link CollectorRegistry} in the OpenMetrics format, the only
+ * one that carries exemplars: the {@code prometheus} endpoint of Spring Boot 2.3 writes the 0.0.4
+ * text format and drops them.
+ */
+@WebEndpoint(id = "openmetrics")
+public class OpenMetricsScrapeEndpoint {
+
+	private final CollectorRegistry collectorRegistry;
+
+	public OpenMetricsScrapeEndpoint(CollectorRegistry collectorRegistry) {
+		this.collectorRegistry = collectorRegistry;
+	}
+
+	@ReadOperation(produces = TextFormat.CONTENT_TYPE_OPENMETRICS_100)
+	public String scrape() {
+		try {
+			StringWriter writer = new StringWriter();
+			TextFormat.writeOpenMetrics100(writer, collectorRegistry.metricFamilySamples());
+			return writer.toString();
+		} catch (IOException ex) {
+			// StringWriter does not throw
+			throw new IllegalStateException("Writing metrics failed", ex);
+		}
+	}
+
+}
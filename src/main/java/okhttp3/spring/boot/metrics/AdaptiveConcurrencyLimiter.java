@@ -0,0 +1,239 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import lombok.Data;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An application {@link Interceptor} that limits the concurrent calls to each host with an AIMD
+ * (additive increase, multiplicative decrease) algorithm.
+ *
+ * <p>A call that completes in time grows the limit of its host by one, as long as at least half of
+ * the limit was in use; a call that fails with an {@link IOException}, is answered with {@code 429}
+ * or {@code 503}, or takes longer than the latency threshold shrinks it by the backoff ratio. A call
+ * canceled by its caller leaves the limit as it is, unless it ran into its call timeout, which
+ * cancels the call too. Calls over the limit fail with a {@link LimitExceededException} instead of
+ * waiting for a slot, so a degraded upstream sheds load on its own.
+ *
+ * <p>The limit is checked where application interceptors run: on the calling thread for {@link
+ * okhttp3.Call#execute()}, but only once the {@link okhttp3.Dispatcher} runs the call for {@link
+ * okhttp3.Call#enqueue}. Asynchronous calls over {@link okhttp3.Dispatcher#getMaxRequestsPerHost()}
+ * (5 by default) still wait in the dispatcher first; raise it to at least the max limit for the
+ * limiter to govern them.
+ *
+ * <p>Publishes the current limit and the rejected calls of every host.
+ */
+public class AdaptiveConcurrencyLimiter implements Interceptor {
+
+    public static final String METRIC_NAME_LIMITER_LIMIT 		= ".limiter.limit";
+    public static final String METRIC_NAME_LIMITER_REJECTED 	= ".limiter.rejected";
+
+    private final MeterRegistry registry;
+    private final String namePrefix;
+    private final Tags tags;
+    private final Settings settings;
+    private final long latencyThresholdNanos;
+    private final Clock clock;
+    private final ConcurrentMap<String, HostLimit> hosts = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry registry, Iterable<Tag> tags, Settings settings) {
+        this(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, tags, settings, registry.config().clock());
+    }
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry registry, String namePrefix, Iterable<Tag> tags, Settings settings, Clock clock) {
+        if (settings.getMinLimit() < 1 || settings.getMaxLimit() < settings.getMinLimit()
+                || settings.getInitialLimit() < settings.getMinLimit() || settings.getInitialLimit() > settings.getMaxLimit()) {
+            throw new IllegalArgumentException("expected 1 <= minLimit <= initialLimit <= maxLimit: " + settings);
+        }
+        if (settings.getBackoffRatio() <= 0 || settings.getBackoffRatio() >= 1) {
+            throw new IllegalArgumentException("backoffRatio not in (0, 1): " + settings.getBackoffRatio());
+        }
+        this.registry = registry;
+        this.namePrefix = namePrefix;
+        this.tags = Tags.of(tags);
+        this.settings = settings;
+        this.latencyThresholdNanos = settings.getLatencyThreshold() == null ? Long.MAX_VALUE : settings.getLatencyThreshold().toNanos();
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        HostLimit limit = hosts.get(host);
+        if (limit == null) {
+            limit = hosts.computeIfAbsent(host, this::register);
+        }
+        if (!limit.tryAcquire()) {
+            limit.rejected.increment();
+            throw new LimitExceededException(host, limit.limit());
+        }
+        long start = clock.monotonicTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (Throwable e) {
+            if (canceledByCaller(chain.call(), clock.monotonicTime() - start)) {
+                limit.release();
+            } else {
+                limit.release(true);
+            }
+            throw e;
+        }
+        limit.release(response.code() == 429 || response.code() == 503
+                || clock.monotonicTime() - start > latencyThresholdNanos);
+        return response;
+    }
+
+    /**
+     * Whether {@code call} failed because its caller canceled it, rather than its call timeout.
+     */
+    private static boolean canceledByCaller(Call call, long elapsedNanos) {
+        if (!call.isCanceled()) {
+            return false;
+        }
+        long callTimeoutNanos = call.timeout().timeoutNanos();
+        return callTimeoutNanos == 0 || elapsedNanos < callTimeoutNanos;
+    }
+
+    /**
+     * The current limit of {@code host}, or the initial limit if it was never called.
+     */
+    public int limit(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? settings.getInitialLimit() : limit.limit();
+    }
+
+    private HostLimit register(String host) {
+        Tags hostTags = tags.and("host", host);
+        HostLimit limit = new HostLimit(settings, Counter.builder(namePrefix + METRIC_NAME_LIMITER_REJECTED)
+                .description("Calls rejected by the adaptive concurrency limit")
+                .tags(hostTags)
+                .register(registry));
+        Gauge.builder(namePrefix + METRIC_NAME_LIMITER_LIMIT, limit, HostLimit::limit)
+                .description("Adaptive concurrency limit of a host")
+                .tags(hostTags)
+                .register(registry);
+        return limit;
+    }
+
+    /**
+     * The limit and the calls in flight of one host.
+     */
+    private static final class HostLimit {
+
+        private final Settings settings;
+        private final Counter rejected;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private double limit;
+
+        HostLimit(Settings settings, Counter rejected) {
+            this.settings = settings;
+            this.rejected = rejected;
+            this.limit = settings.getInitialLimit();
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            int max = limit();
+            for (;;) {
+                int current = inFlight.get();
+                if (current >= max) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Ends a call that says nothing about the host.
+         */
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        void release(boolean dropped) {
+            int inFlightBefore = inFlight.getAndDecrement();
+            synchronized (this) {
+                if (dropped) {
+                    limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+                } else if (inFlightBefore * 2 >= limit) {
+                    limit = Math.min(settings.getMaxLimit(), limit + 1);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Thrown when a call is rejected because its host is at its concurrency limit.
+     */
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public LimitExceededException(String host, int limit) {
+            super("Concurrency limit of " + host + " reached: " + limit);
+        }
+
+    }
+
+    /**
+     * The bounds and the reactions of the limit of every host.
+     */
+    @Data
+    public static class Settings {
+
+        /**
+         * Whether the limiter is installed.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The limit of a host before its first call.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * The lowest limit a host backs off to.
+         */
+        private int minLimit = 1;
+
+        /**
+         * The highest limit a host grows to.
+         */
+        private int maxLimit = 200;
+
+        /**
+         * The factor applied to the limit on an error, an overload response or a slow call.
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * Calls slower than this count as overload; no latency threshold when unset.
+         */
+        private Duration latencyThreshold = Duration.ofSeconds(5);
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package okhttp3.spring.boot.metrics;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A memoizing cache with a hard size limit, for values that are cheap to recompute.
+ *
+ * <p>The entries are a {@link BoundedMap}: when the limit is reached the whole cache is dropped
+ * and refilled by the keys that are still in use, so a burst of unique keys (e.g. paths with IDs)
+ * can never grow it past {@code maximumSize}.
+ */
+final class BoundedCache<K, V> {
+
+    private final Function<? super K, ? extends V> loader;
+    private final BoundedMap<K, V> entries;
+
+    BoundedCache(int maximumSize, Function<? super K, ? extends V> loader) {
+        this.entries = new BoundedMap<>(maximumSize);
+        this.loader = Objects.requireNonNull(loader, "loader");
+    }
+
+    V get(K key) {
+        V value = entries.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        entries.put(key, value);
+        return value;
+    }
+
+    /**
+     * The cached value of {@code key}, without loading it.
+     */
+    V getIfPresent(K key) {
+        return entries.getIfPresent(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+}
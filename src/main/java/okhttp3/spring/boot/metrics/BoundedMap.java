@@ -0,0 +1,43 @@
+package okhttp3.spring.boot.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A map with a hard size limit, for values the caller computes itself, e.g. after probing with a
+ * mutable key whose stable copy it only makes on a miss.
+ *
+ * <p>When the limit is reached the whole map is dropped and refilled by the keys that are still
+ * in use: no per-entry bookkeeping on hits, and a burst of unique keys can never grow it past
+ * {@code maximumSize}.
+ */
+final class BoundedMap<K, V> {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, V> entries;
+
+    BoundedMap(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+    }
+
+    V getIfPresent(K key) {
+        return entries.get(key);
+    }
+
+    void put(K key, V value) {
+        if (maximumSize > 0) {
+            if (entries.size() >= maximumSize) {
+                entries.clear();
+            }
+            entries.put(key, value);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+}
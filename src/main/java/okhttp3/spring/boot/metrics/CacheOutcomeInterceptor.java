@@ -0,0 +1,243 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * An application {@link Interceptor} that records the HTTP cache outcome of every request, by
+ * {@code uri}: {@code HIT}, {@code CONDITIONAL_HIT} (revalidated with a 304), {@code MISS} or
+ * {@code NOT_CACHEABLE}.
+ *
+ * <p>Also records the response bytes served from the cache and, for hits, the latency saved: the
+ * moving average of the network latency of the same {@code uri}, minus the latency of the hit.
+ *
+ * <p>The outcome is read from {@link Response#cacheResponse()} and {@link
+ * Response#networkResponse()}, since OkHttp 3 has no cache events; a network response the {@link
+ * Cache} would not store, e.g. of a {@code POST}, is {@code NOT_CACHEABLE}. Requests tagged {@link
+ * Unmetered} are not recorded.
+ */
+public class CacheOutcomeInterceptor implements Interceptor {
+
+    public static final String METRIC_NAME_CACHE_REQUESTS 		= ".cache.requests";
+    public static final String METRIC_NAME_CACHE_SERVED_BYTES 	= ".cache.served.bytes";
+    public static final String METRIC_NAME_CACHE_SAVED_DURATION 	= ".cache.saved.duration";
+
+    /**
+     * The cache outcome of a request.
+     */
+    public enum Outcome {
+        HIT, CONDITIONAL_HIT, MISS, NOT_CACHEABLE
+    }
+
+    /** Weight of the latest network latency in its moving average. */
+    private static final double ALPHA = 0.2;
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final MeterRegistry registry;
+    private final String namePrefix;
+    private final Tags tags;
+    private final Function<Request, String> urlMapper;
+    private final Clock clock;
+    private final boolean cacheEnabled;
+    private final BoundedCache<String, UriMeters> uris = new BoundedCache<>(1024, UriMeters::new);
+
+    /**
+     * @param cache the HTTP cache of the client; without one every request is {@code NOT_CACHEABLE}
+     */
+    public CacheOutcomeInterceptor(MeterRegistry registry, Iterable<Tag> tags, Function<Request, String> urlMapper,
+                                   @Nullable Cache cache) {
+        this(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, tags, urlMapper, registry.config().clock(), cache);
+    }
+
+    public CacheOutcomeInterceptor(MeterRegistry registry, String namePrefix, Iterable<Tag> tags,
+                                   Function<Request, String> urlMapper, Clock clock, @Nullable Cache cache) {
+        this.registry = registry;
+        this.namePrefix = namePrefix;
+        this.tags = Tags.of(tags);
+        this.urlMapper = Objects.requireNonNull(urlMapper, "urlMapper");
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.cacheEnabled = cache != null;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (Unmetered.isUnmetered(request)) {
+            return chain.proceed(request);
+        }
+        long start = clock.monotonicTime();
+        Response response = chain.proceed(request);
+        long nanos = clock.monotonicTime() - start;
+
+        Outcome outcome = cacheEnabled ? outcome(request, response) : Outcome.NOT_CACHEABLE;
+        UriMeters meters = uris.get(urlMapper.apply(request));
+        meters.requests(outcome).increment();
+        switch (outcome) {
+            case HIT:
+                double networkNanos = meters.networkNanos;
+                if (networkNanos > nanos) {
+                    meters.savedDuration().record((long) networkNanos - nanos, TimeUnit.NANOSECONDS);
+                }
+                recordServedBytes(response, meters);
+                break;
+            case CONDITIONAL_HIT:
+                recordServedBytes(response, meters);
+                break;
+            default:
+                if (response.networkResponse() != null) {
+                    meters.updateNetworkLatency(nanos);
+                }
+        }
+        return response;
+    }
+
+    static Outcome outcome(Request request, Response response) {
+        Response cacheResponse = response.cacheResponse();
+        Response networkResponse = response.networkResponse();
+        if (cacheResponse != null && networkResponse == null) {
+            return Outcome.HIT;
+        }
+        if (cacheResponse != null) {
+            return networkResponse.code() == 304 ? Outcome.CONDITIONAL_HIT : Outcome.MISS;
+        }
+        if (networkResponse != null && !isCacheable(request, networkResponse)) {
+            return Outcome.NOT_CACHEABLE;
+        }
+        return Outcome.MISS;
+    }
+
+    /**
+     * Whether {@link Cache} would store the response, with the rules of OkHttp 3: only {@code GET},
+     * only the status codes cacheable by default (302 and 307 with explicit freshness), no {@code
+     * no-store} and no {@code Vary: *}.
+     */
+    static boolean isCacheable(Request request, Response response) {
+        if (!"GET".equals(request.method())) {
+            return false;
+        }
+        CacheControl cacheControl = response.cacheControl();
+        switch (response.code()) {
+            case 200:
+            case 203:
+            case 204:
+            case 300:
+            case 301:
+            case 308:
+            case 404:
+            case 405:
+            case 410:
+            case 414:
+            case 501:
+                break;
+            case 302:
+            case 307:
+                if (response.header("Expires") != null || cacheControl.maxAgeSeconds() != -1
+                        || cacheControl.isPublic() || cacheControl.isPrivate()) {
+                    break;
+                }
+                return false;
+            default:
+                return false;
+        }
+        if (cacheControl.noStore() || request.cacheControl().noStore()) {
+            return false;
+        }
+        for (String vary : response.headers("Vary")) {
+            for (String field : vary.split(",")) {
+                if (field.trim().equals("*")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void recordServedBytes(Response response, UriMeters meters) {
+        ResponseBody body = response.body();
+        long bytes = body == null ? -1 : body.contentLength();
+        if (bytes >= 0) {
+            meters.servedBytes().record(bytes);
+        }
+    }
+
+    /**
+     * The meters of one {@code uri}, registered on first use, and the exponentially weighted moving
+     * average of its network latency. Registration and updates are racy by design: the registry
+     * returns the same meter to every racer, and a lost sample only shifts the average slightly.
+     */
+    private final class UriMeters {
+
+        private final Tags uriTags;
+        private final Counter[] requests = new Counter[OUTCOMES.length];
+        private Timer savedDuration;
+        private DistributionSummary servedBytes;
+        volatile double networkNanos;
+
+        UriMeters(String uri) {
+            this.uriTags = tags.and("uri", uri);
+        }
+
+        Counter requests(Outcome outcome) {
+            Counter counter = requests[outcome.ordinal()];
+            if (counter == null) {
+                counter = Counter.builder(namePrefix + METRIC_NAME_CACHE_REQUESTS)
+                        .description("Requests by HTTP cache outcome")
+                        .tags(uriTags)
+                        .tag("outcome", outcome.name())
+                        .register(registry);
+                requests[outcome.ordinal()] = counter;
+            }
+            return counter;
+        }
+
+        Timer savedDuration() {
+            Timer timer = savedDuration;
+            if (timer == null) {
+                timer = Timer.builder(namePrefix + METRIC_NAME_CACHE_SAVED_DURATION)
+                        .description("Latency saved by cache hits compared with the network path")
+                        .tags(uriTags)
+                        .register(registry);
+                savedDuration = timer;
+            }
+            return timer;
+        }
+
+        DistributionSummary servedBytes() {
+            DistributionSummary summary = servedBytes;
+            if (summary == null) {
+                summary = DistributionSummary.builder(namePrefix + METRIC_NAME_CACHE_SERVED_BYTES)
+                        .description("Response body bytes served from the HTTP cache")
+                        .baseUnit("bytes")
+                        .tags(uriTags)
+                        .register(registry);
+                servedBytes = summary;
+            }
+            return summary;
+        }
+
+        void updateNetworkLatency(long sample) {
+            double current = networkNanos;
+            networkNanos = current == 0 ? sample : current + ALPHA * (sample - current);
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package okhttp3.spring.boot.metrics;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which calls get their detailed meters recorded: the phase timers of {@link
+ * InstrumentedEventListener} and, in {@link InstrumentationMode#UNIFIED}, the context specific
+ * tags. Counters, byte counts and the call timer are recorded for every call.
+ *
+ * <p>A call is detailed when it is sampled at {@link Settings#getRate() rate}, when it fails, or
+ * when it is slower than {@link Settings#getSlowThreshold() slowThreshold}. The draw uses {@link
+ * ThreadLocalRandom}, so sampling neither locks nor shares state between threads.
+ */
+public final class CallSampler {
+
+    /**
+     * Details every call.
+     */
+    static final CallSampler ALWAYS = new CallSampler(new Settings());
+
+    private final double rate;
+    private final long slowNanos;
+
+    public CallSampler(Settings settings) {
+        if (settings.getRate() < 0 || settings.getRate() > 1) {
+            throw new IllegalArgumentException("rate not in [0, 1]: " + settings.getRate());
+        }
+        this.rate = settings.getRate();
+        this.slowNanos = settings.getSlowThreshold() == null ? Long.MAX_VALUE : settings.getSlowThreshold().toNanos();
+    }
+
+    /**
+     * Draws whether a starting call is sampled.
+     */
+    boolean sample() {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Whether a finished call gets its detailed meters.
+     */
+    boolean detailed(boolean sampled, boolean failed, long callNanos) {
+        return sampled || failed || callNanos >= slowNanos;
+    }
+
+    /**
+     * The sample rate and the slow call threshold.
+     */
+    @Data
+    public static class Settings {
+
+        /**
+         * Fraction of calls whose phase timers and context specific tags are recorded, from 0 to 1.
+         */
+        private double rate = 1.0;
+
+        /**
+         * Calls at least this slow are always detailed; failed calls always are.
+         */
+        private Duration slowThreshold = Duration.ofSeconds(1);
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package okhttp3.spring.boot.metrics;
+
+/**
+ * Per-call record of the phase durations of a single {@link okhttp3.Call}, in nanoseconds.
+ *
+ * <p>Each phase is opened by a {@code *Start} method and closed by the matching {@code *End}
+ * method; the elapsed time is accumulated, so retries, redirects and follow-up requests on the
+ * same call add up. A start mark of {@code 0} means the phase is not currently open.
+ *
+ * <p>Instances are not thread-safe: OkHttp delivers the events of one call sequentially.
+ */
+final class CallTimings {
+
+  long callStartNanos;
+  long callNanos;
+
+  private long dnsStartNanos;
+  long dnsNanos;
+
+  private long connectStartNanos;
+  long connectNanos;
+
+  private long secureConnectStartNanos;
+  long secureConnectNanos;
+
+  private long exchangeStartNanos;
+
+  private long requestStartNanos;
+  private long requestEndNanos;
+  long requestNanos;
+
+  long firstByteNanos;
+
+  private long responseBodyStartNanos;
+  long responseBodyNanos;
+
+  void callStart(long now) {
+    this.callStartNanos = now;
+  }
+
+  void callEnd(long now) {
+    this.callNanos = now - callStartNanos;
+  }
+
+  void dnsStart(long now) {
+    this.dnsStartNanos = now;
+  }
+
+  void dnsEnd(long now) {
+    if (dnsStartNanos != 0) {
+      this.dnsNanos += now - dnsStartNanos;
+      this.dnsStartNanos = 0;
+    }
+  }
+
+  void connectStart(long now) {
+    this.connectStartNanos = now;
+  }
+
+  /**
+   * Closes the TCP phase; called when the TLS handshake starts, or when the connect attempt
+   * ends or fails without one.
+   */
+  void connectEnd(long now) {
+    if (connectStartNanos != 0) {
+      this.connectNanos += now - connectStartNanos;
+      this.connectStartNanos = 0;
+    }
+  }
+
+  void secureConnectStart(long now) {
+    connectEnd(now);
+    this.secureConnectStartNanos = now;
+  }
+
+  /**
+   * Closes the TLS phase.
+   *
+   * @return the duration of this handshake, or {@code -1} if none was open
+   */
+  long secureConnectEnd(long now) {
+    if (secureConnectStartNanos == 0) {
+      return -1;
+    }
+    long nanos = now - secureConnectStartNanos;
+    this.secureConnectNanos += nanos;
+    this.secureConnectStartNanos = 0;
+    return nanos;
+  }
+
+  /**
+   * Opens a network exchange (one request/response pair); called when the request headers
+   * start.
+   */
+  void exchangeStart(long now) {
+    this.exchangeStartNanos = now;
+  }
+
+  /**
+   * Closes the open network exchange, if any, on its response headers or on a failure.
+   *
+   * @return the duration of the exchange, or {@code -1} if no exchange was open
+   */
+  long exchangeEnd(long now) {
+    if (exchangeStartNanos == 0) {
+      return -1;
+    }
+    long nanos = now - exchangeStartNanos;
+    this.exchangeStartNanos = 0;
+    return nanos;
+  }
+
+  void requestStart(long now) {
+    this.requestStartNanos = now;
+  }
+
+  void requestEnd(long now) {
+    if (requestStartNanos != 0) {
+      this.requestNanos += now - requestStartNanos;
+      this.requestStartNanos = 0;
+      this.requestEndNanos = now;
+    }
+  }
+
+  void responseHeadersStart(long now) {
+    if (requestEndNanos != 0) {
+      this.firstByteNanos += now - requestEndNanos;
+      this.requestEndNanos = 0;
+    }
+  }
+
+  void responseBodyStart(long now) {
+    this.responseBodyStartNanos = now;
+  }
+
+  void responseBodyEnd(long now) {
+    if (responseBodyStartNanos != 0) {
+      this.responseBodyNanos += now - responseBodyStartNanos;
+      this.responseBodyStartNanos = 0;
+    }
+  }
+
+}
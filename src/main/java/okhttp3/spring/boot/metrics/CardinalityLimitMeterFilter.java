@@ -0,0 +1,125 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.NonNull;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MeterFilter} that caps the number of distinct values of every tag key of every OkHttp3
+ * meter name; values past the cap are replaced with {@value #OTHER}, so a tag such as {@code uri},
+ * {@code host} or a request tag cannot grow the registry without bound.
+ *
+ * <p>The values admitted first are kept for the lifetime of the filter. Also a {@link MeterBinder}
+ * publishing {@value #METRIC_NAME_METERS_FOLDED}: the distinct tag values folded, each counted the
+ * first time it is folded rather than on every lookup of its meter, so any increase means a new
+ * value is being hidden under {@value #OTHER}. Up to {@value #MAX_FOLDED_VALUES} folded values are
+ * remembered per meter name and tag key; past that the counter stops for that key.
+ */
+public class CardinalityLimitMeterFilter implements MeterFilter, MeterBinder {
+
+    public static final String OTHER = "OTHER";
+
+    public static final String METRIC_NAME_METERS_FOLDED = OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + ".meters.folded";
+
+    public static final int DEFAULT_MAX_TAG_VALUES = 100;
+
+    static final int MAX_FOLDED_VALUES = 1000;
+
+    private final int maxTagValues;
+    private final ConcurrentMap<String, ConcurrentMap<String, TagValues>> values = new ConcurrentHashMap<>();
+    private final LongAdder folded = new LongAdder();
+
+    public CardinalityLimitMeterFilter() {
+        this(DEFAULT_MAX_TAG_VALUES);
+    }
+
+    /**
+     * @param maxTagValues the number of distinct values kept per meter name and tag key
+     */
+    public CardinalityLimitMeterFilter(int maxTagValues) {
+        if (maxTagValues < 1) {
+            throw new IllegalArgumentException("maxTagValues < 1: " + maxTagValues);
+        }
+        this.maxTagValues = maxTagValues;
+    }
+
+    @NonNull
+    @Override
+    public Meter.Id map(@NonNull Meter.Id id) {
+        String name = id.getName();
+        if (!name.startsWith(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX) || name.equals(METRIC_NAME_METERS_FOLDED)) {
+            return id;
+        }
+        List<Tag> mapped = null;
+        int index = 0;
+        for (Tag tag : id.getTagsAsIterable()) {
+            if (!admit(name, tag)) {
+                if (mapped == null) {
+                    mapped = new ArrayList<>(id.getTags());
+                }
+                mapped.set(index, Tag.of(tag.getKey(), OTHER));
+            }
+            index++;
+        }
+        if (mapped == null) {
+            return id;
+        }
+        return id.replaceTags(mapped);
+    }
+
+    private boolean admit(String name, Tag tag) {
+        ConcurrentMap<String, TagValues> keys = values.get(name);
+        if (keys == null) {
+            keys = values.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+        }
+        TagValues tagValues = keys.get(tag.getKey());
+        if (tagValues == null) {
+            tagValues = keys.computeIfAbsent(tag.getKey(), k -> new TagValues());
+        }
+        return tagValues.admit(tag.getValue());
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder(METRIC_NAME_METERS_FOLDED, folded, LongAdder::sum)
+                .description("Distinct tag values of OkHttp3 meters folded into " + OTHER)
+                .register(registry);
+    }
+
+    /**
+     * The admitted and the folded values of one tag key of a meter name.
+     */
+    private final class TagValues {
+
+        private final Set<String> admitted = ConcurrentHashMap.newKeySet();
+        private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+        boolean admit(String value) {
+            if (admitted.contains(value)) {
+                return true;
+            }
+            // racing admissions may overshoot the cap by the number of concurrent registrations
+            if (admitted.size() < maxTagValues) {
+                admitted.add(value);
+                return true;
+            }
+            if (rejected.size() < MAX_FOLDED_VALUES && rejected.add(value)) {
+                folded.increment();
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,244 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Connection;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pooled connections of a client, followed from their first {@code connectionAcquired} to
+ * their close, and grouped by route ({@code host:port} of the address they serve).
+ *
+ * <p>OkHttp reports no event when a connection is closed, so connections are swept for closed
+ * sockets at most once per {@link #SWEEP_INTERVAL_NANOS}, on release and when the route gauges
+ * are read; the recorded lifetime of a connection is therefore late by up to the sweep interval.
+ * A connection counts as new for the call that connected it and as reused for every other call,
+ * including the streams multiplexed onto an HTTP/2 connection; the reuse ratio of a route is the
+ * rate of {@code okhttp3.connections.acquisitions{reused="true"}} over the rate of all its
+ * acquisitions.
+ *
+ * <p>Acquisitions, lifetimes and calls per connection are tagged with the negotiated protocol, so
+ * the calls per connection of {@code h2} are the streams it carried; per route, the average number
+ * of concurrent streams on the open HTTP/2 connections is a gauge.
+ */
+final class ConnectionTracker {
+
+    static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Clock clock;
+    private final ConcurrentMap<Protocol, Timer> lifetimes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Protocol, DistributionSummary> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Connection, Tracked> connections = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    ConnectionTracker(MeterRegistry registry, Iterable<Tag> tags, Clock clock) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+        this.clock = clock;
+        this.lastSweep = new AtomicLong(clock.monotonicTime());
+    }
+
+    /**
+     * @param connected whether the acquiring call established the connection itself
+     */
+    void acquired(Connection connection, boolean connected) {
+        Tracked tracked = connections.get(connection);
+        if (tracked == null) {
+            tracked = connections.computeIfAbsent(connection, this::track);
+        }
+        tracked.acquisitions.incrementAndGet();
+        if (tracked.inUse.getAndIncrement() == 0) {
+            tracked.route.active.incrementAndGet();
+        }
+        if (tracked.multiplexed) {
+            tracked.route.h2Streams.incrementAndGet();
+        }
+        tracked.route.acquired(registry, tracked.protocol, connected);
+    }
+
+    void released(Connection connection) {
+        Tracked tracked = connections.get(connection);
+        if (tracked != null) {
+            if (tracked.inUse.decrementAndGet() == 0) {
+                tracked.route.active.decrementAndGet();
+            }
+            if (tracked.multiplexed) {
+                tracked.route.h2Streams.decrementAndGet();
+            }
+        }
+        maybeSweep();
+    }
+
+    private Tracked track(Connection connection) {
+        HttpUrl url = connection.route().address().url();
+        String route = url.host() + ":" + url.port();
+        Route stripe = routes.get(route);
+        if (stripe == null) {
+            stripe = routes.computeIfAbsent(route, this::register);
+        }
+        Tracked tracked = new Tracked(stripe, connection.protocol(), clock.monotonicTime());
+        stripe.open.incrementAndGet();
+        if (tracked.multiplexed) {
+            stripe.h2Open.incrementAndGet();
+        }
+        return tracked;
+    }
+
+    /**
+     * Retires the connections whose socket was closed since the last sweep, unless another thread
+     * swept within the interval.
+     */
+    void maybeSweep() {
+        long now = clock.monotonicTime();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (Iterator<Map.Entry<Connection, Tracked>> it = connections.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Connection, Tracked> entry = it.next();
+            Socket socket = entry.getKey().socket();
+            if (socket != null && !socket.isClosed()) {
+                continue;
+            }
+            it.remove();
+            Tracked tracked = entry.getValue();
+            tracked.route.open.decrementAndGet();
+            int inUse = tracked.inUse.get();
+            if (inUse > 0) {
+                tracked.route.active.decrementAndGet();
+            }
+            if (tracked.multiplexed) {
+                tracked.route.h2Open.decrementAndGet();
+                tracked.route.h2Streams.addAndGet(-inUse);
+            }
+            lifetime(tracked.protocol).record(now - tracked.openedNanos, TimeUnit.NANOSECONDS);
+            requests(tracked.protocol).record(tracked.acquisitions.get());
+        }
+    }
+
+    private Route register(String route) {
+        Route stripe = new Route(route, tags);
+        Gauge.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_ACTIVE, stripe, s -> {
+                    maybeSweep();
+                    return s.active.get();
+                })
+                .description("Open connections of a route carrying at least one call")
+                .tags(tags)
+                .tag("route", route)
+                .register(registry);
+        Gauge.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_IDLE, stripe, s -> {
+                    maybeSweep();
+                    return Math.max(0, s.open.get() - s.active.get());
+                })
+                .description("Open connections of a route carrying no call")
+                .tags(tags)
+                .tag("route", route)
+                .register(registry);
+        Gauge.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_H2_STREAMS, stripe, Route::streamsPerConnection)
+                .description("Average concurrent streams on the open HTTP/2 connections of a route")
+                .tags(tags)
+                .tag("route", route)
+                .register(registry);
+        return stripe;
+    }
+
+    private Timer lifetime(Protocol protocol) {
+        return lifetimes.computeIfAbsent(protocol, p -> Timer.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_LIFETIME)
+                .description("Time from the first use of a connection to its close")
+                .tags(tags)
+                .tag("protocol", p.toString())
+                .register(registry));
+    }
+
+    private DistributionSummary requests(Protocol protocol) {
+        return requests.computeIfAbsent(protocol, p -> DistributionSummary.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_REQUESTS)
+                .description("Calls carried by a connection over its lifetime; the streams of an HTTP/2 connection")
+                .tags(tags)
+                .tag("protocol", p.toString())
+                .register(registry));
+    }
+
+    /**
+     * The calls on one open connection.
+     */
+    private static final class Tracked {
+
+        final Route route;
+        final Protocol protocol;
+        final boolean multiplexed;
+        final long openedNanos;
+        final AtomicInteger inUse = new AtomicInteger();
+        final AtomicInteger acquisitions = new AtomicInteger();
+
+        Tracked(Route route, Protocol protocol, long openedNanos) {
+            this.route = route;
+            this.protocol = protocol;
+            this.multiplexed = protocol == Protocol.HTTP_2 || protocol == Protocol.H2_PRIOR_KNOWLEDGE;
+            this.openedNanos = openedNanos;
+        }
+
+    }
+
+    /**
+     * The open connections of one route.
+     */
+    private static final class Route {
+
+        final String name;
+        final Tags tags;
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger h2Open = new AtomicInteger();
+        final AtomicInteger h2Streams = new AtomicInteger();
+        /** The new and the reused acquisition counters of each protocol. */
+        private final ConcurrentMap<Protocol, Counter[]> acquisitions = new ConcurrentHashMap<>();
+
+        Route(String name, Tags tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+
+        void acquired(MeterRegistry registry, Protocol protocol, boolean newConnection) {
+            Counter[] counters = acquisitions.get(protocol);
+            if (counters == null) {
+                counters = acquisitions.computeIfAbsent(protocol, p -> new Counter[]{
+                        acquisitions(registry, p, false), acquisitions(registry, p, true)});
+            }
+            counters[newConnection ? 0 : 1].increment();
+        }
+
+        private Counter acquisitions(MeterRegistry registry, Protocol protocol, boolean reused) {
+            return Counter.builder(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ACQUISITIONS)
+                    .description("Connections acquired by calls, new or reused from the pool")
+                    .tags(tags)
+                    .tags("route", name, "protocol", protocol.toString(), "reused", Boolean.toString(reused))
+                    .register(registry);
+        }
+
+        double streamsPerConnection() {
+            int connections = h2Open.get();
+            return connections == 0 ? Double.NaN : (double) h2Streams.get() / connections;
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package okhttp3.spring.boot.metrics;
+
+/**
+ * Why a call, or one of its phases, failed; the {@code cause} tag of {@link
+ * OkHttp3Metrics#METRIC_NAME_FAILURES}, see {@link FailureClassifier}.
+ */
+public enum FailureCause {
+
+    /**
+     * The TCP connect did not complete within the connect timeout.
+     */
+    CONNECT_TIMEOUT,
+    /**
+     * No response bytes arrived within the read timeout.
+     */
+    READ_TIMEOUT,
+    /**
+     * The request could not be written within the write timeout.
+     */
+    WRITE_TIMEOUT,
+    /**
+     * The whole call did not complete within the call timeout.
+     */
+    CALL_TIMEOUT,
+    /**
+     * The peer refused or could not be reached.
+     */
+    CONNECTION_REFUSED,
+    /**
+     * The connection or HTTP/2 stream was reset or closed by the peer.
+     */
+    CONNECTION_RESET,
+    /**
+     * The TLS handshake or certificate verification failed.
+     */
+    TLS,
+    /**
+     * The host name could not be resolved.
+     */
+    DNS,
+    /**
+     * A web socket ping was not answered in time.
+     */
+    PING_FAILED,
+    /**
+     * The call was canceled.
+     */
+    CANCELED,
+    /**
+     * Any other {@link java.io.IOException}.
+     */
+    OTHER,
+    ;
+
+}
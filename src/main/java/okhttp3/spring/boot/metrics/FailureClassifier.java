@@ -0,0 +1,112 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.Nullable;
+import okhttp3.internal.http2.StreamResetException;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Maps the {@link IOException} of a failed call or phase to a {@link FailureCause}.
+ *
+ * <p>Most causes follow from the exception class alone, which is looked up once per class in a
+ * {@link ClassValue}. Timeouts and socket errors also need the message, or the phase that failed:
+ * Okio reports read and write timeouts with the same {@code SocketTimeoutException("timeout")}.
+ */
+final class FailureClassifier {
+
+    /**
+     * Where the failure was reported.
+     */
+    enum Phase {
+        CONNECT, REQUEST, RESPONSE, CALL
+    }
+
+    /** The cause implied by an exception class, or {@code null} when the instance decides. */
+    private static final ClassValue<FailureCause> BY_CLASS = new ClassValue<FailureCause>() {
+        @Override
+        protected FailureCause computeValue(Class<?> type) {
+            if (UnknownHostException.class.isAssignableFrom(type)) {
+                return FailureCause.DNS;
+            }
+            if (ConnectException.class.isAssignableFrom(type) || NoRouteToHostException.class.isAssignableFrom(type)) {
+                return FailureCause.CONNECTION_REFUSED;
+            }
+            if (SSLException.class.isAssignableFrom(type)) {
+                return FailureCause.TLS;
+            }
+            if (StreamResetException.class.isAssignableFrom(type)) {
+                return FailureCause.CONNECTION_RESET;
+            }
+            if (type == InterruptedIOException.class) {
+                // OkHttp's call timeout; socket timeouts are the SocketTimeoutException subclass
+                return FailureCause.CALL_TIMEOUT;
+            }
+            if (type == IOException.class || SocketTimeoutException.class.isAssignableFrom(type)
+                    || SocketException.class.isAssignableFrom(type)) {
+                return null;
+            }
+            return FailureCause.OTHER;
+        }
+    };
+
+    private FailureClassifier() {
+    }
+
+    /**
+     * @param canceled whether the call was canceled, which explains any failure that follows except
+     *                 the call timeout: OkHttp cancels a call when its timeout fires and then reports
+     *                 the {@code InterruptedIOException("timeout")} of {@code Transmitter.timeoutExit}
+     * @param phase the phase that failed; for {@link Phase#CALL}, the last phase that failed, if any
+     */
+    static FailureCause classify(IOException e, boolean canceled, Phase phase) {
+        if (e.getClass() == InterruptedIOException.class) {
+            return FailureCause.CALL_TIMEOUT;
+        }
+        if (canceled) {
+            return FailureCause.CANCELED;
+        }
+        FailureCause cause = byInstance(e, phase);
+        if (cause == FailureCause.OTHER && e.getCause() instanceof IOException && e.getCause() != e) {
+            return byInstance((IOException) e.getCause(), phase);
+        }
+        return cause;
+    }
+
+    private static FailureCause byInstance(IOException e, Phase phase) {
+        FailureCause cause = BY_CLASS.get(e.getClass());
+        if (cause != null) {
+            return cause;
+        }
+        String message = e.getMessage();
+        if (e instanceof SocketTimeoutException) {
+            if (message != null && message.startsWith("sent ping but didn't receive pong")) {
+                return FailureCause.PING_FAILED;
+            }
+            switch (phase) {
+                case CONNECT:
+                    return FailureCause.CONNECT_TIMEOUT;
+                case REQUEST:
+                    return FailureCause.WRITE_TIMEOUT;
+                default:
+                    return FailureCause.READ_TIMEOUT;
+            }
+        }
+        if (isReset(message)) {
+            return FailureCause.CONNECTION_RESET;
+        }
+        return FailureCause.OTHER;
+    }
+
+    private static boolean isReset(@Nullable String message) {
+        return message != null && (message.startsWith("Connection reset") || message.startsWith("Broken pipe")
+                || message.startsWith("unexpected end of stream"));
+    }
+
+}
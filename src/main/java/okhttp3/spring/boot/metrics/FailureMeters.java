@@ -0,0 +1,120 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The classified failures of a client, per host: {@link OkHttp3Metrics#METRIC_NAME_FAILURES} by
+ * phase and {@link FailureCause}, and for failed calls the timeout and ping counters of {@link
+ * OkHttp3Metrics}.
+ *
+ * <p>Counters are created on the first failure of each host, phase and cause, and then reached
+ * through arrays; recording a failure does not touch the registry.
+ */
+final class FailureMeters {
+
+    private static final FailureClassifier.Phase[] PHASES = FailureClassifier.Phase.values();
+    private static final FailureCause[] CAUSES = FailureCause.values();
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    FailureMeters(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+    }
+
+    /**
+     * Records a failure and returns its cause.
+     */
+    FailureCause record(Call call, IOException e, FailureClassifier.Phase phase, @Nullable FailureClassifier.Phase failedPhase) {
+        FailureCause cause = FailureClassifier.classify(e, call.isCanceled(), failedPhase == null ? phase : failedPhase);
+        String hostname = call.request().url().host();
+        Host host = hosts.get(hostname);
+        if (host == null) {
+            host = hosts.computeIfAbsent(hostname, name -> new Host(name, tags));
+        }
+        host.failures(registry, phase, cause).increment();
+        if (phase == FailureClassifier.Phase.CALL) {
+            Counter legacy = host.legacy(registry, cause);
+            if (legacy != null) {
+                legacy.increment();
+            }
+        }
+        return cause;
+    }
+
+    /**
+     * The failure counters of one host.
+     */
+    private static final class Host {
+
+        final String name;
+        final Tags tags;
+        final Counter[] failures = new Counter[PHASES.length * CAUSES.length];
+        final Counter[] legacy = new Counter[CAUSES.length];
+
+        Host(String name, Tags tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+
+        Counter failures(MeterRegistry registry, FailureClassifier.Phase phase, FailureCause cause) {
+            int index = phase.ordinal() * CAUSES.length + cause.ordinal();
+            Counter counter = failures[index];
+            if (counter == null) {
+                // racing threads register the same meter and store the same instance
+                counter = Counter.builder(OkHttp3Metrics.METRIC_NAME_FAILURES)
+                        .description("Failed calls and call phases, by cause")
+                        .tags(tags.and("host", name, "phase", phase.name().toLowerCase(Locale.ROOT), "cause", cause.name()))
+                        .register(registry);
+                failures[index] = counter;
+            }
+            return counter;
+        }
+
+        @Nullable
+        Counter legacy(MeterRegistry registry, FailureCause cause) {
+            String name = legacyName(cause);
+            if (name == null) {
+                return null;
+            }
+            Counter counter = legacy[cause.ordinal()];
+            if (counter == null) {
+                counter = registry.counter(name, tags.and("host", this.name));
+                legacy[cause.ordinal()] = counter;
+            }
+            return counter;
+        }
+
+        @Nullable
+        private static String legacyName(FailureCause cause) {
+            switch (cause) {
+                case CALL_TIMEOUT:
+                    return OkHttp3Metrics.METRIC_NAME_CALL_TIMEOUT_COUNT;
+                case CONNECT_TIMEOUT:
+                    return OkHttp3Metrics.METRIC_NAME_CONNECT_TIMEOUT_COUNT;
+                case READ_TIMEOUT:
+                    return OkHttp3Metrics.METRIC_NAME_READ_TIMEOUT_COUNT;
+                case WRITE_TIMEOUT:
+                    return OkHttp3Metrics.METRIC_NAME_WRITE_TIMEOUT_COUNT;
+                case PING_FAILED:
+                    return OkHttp3Metrics.METRIC_NAME_PING_FAIL_COUNT;
+                default:
+                    return null;
+            }
+        }
+
+    }
+
+}
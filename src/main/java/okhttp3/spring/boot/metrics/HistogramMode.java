@@ -0,0 +1,29 @@
+package okhttp3.spring.boot.metrics;
+
+/**
+ * How an OkHttp3 {@link io.micrometer.core.instrument.Timer} publishes its distribution, see
+ * {@link HistogramStrategy}.
+ */
+public enum HistogramMode {
+
+    /**
+     * Count, total and max only; the cheapest {@code record()}.
+     */
+    NONE,
+    /**
+     * Client-side percentiles. Every {@code record()} updates a decaying HdrHistogram, and the
+     * published values cannot be aggregated across instances.
+     */
+    PERCENTILES,
+    /**
+     * Fixed histogram buckets between the minimum and maximum expected values ({@code _bucket}
+     * series in Prometheus); cheap to record and aggregatable with {@code histogram_quantile}.
+     */
+    HISTOGRAM,
+    /**
+     * Only the buckets of the configured service level objectives.
+     */
+    SLO,
+    ;
+
+}
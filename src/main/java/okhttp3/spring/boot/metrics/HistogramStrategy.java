@@ -0,0 +1,166 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.NonNull;
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A {@link MeterFilter} that sets the distribution of every OkHttp3 {@link
+ * io.micrometer.core.instrument.Timer} from a {@link HistogramMode}.
+ *
+ * <p>Settings are resolved per meter: the defaults, overridden by the settings of the client (the
+ * value of the {@code client} tag), overridden by the settings of the meter name. Unset fields of
+ * an override are inherited.
+ *
+ * <p>A timer whose resolved {@link Settings#getMode() mode} is unset keeps the distribution of its
+ * own builder; by default that leaves histogram buckets on {@code okhttp3.network.requests.duration}
+ * only, so the other timers, e.g. per {@code uri} or per TLS cipher, do not multiply their series.
+ * A mode only sets the fields it uses and leaves the others to the builder, except {@link
+ * HistogramMode#NONE}, which turns every distribution statistic off.
+ *
+ * <p>Register it before the meters are created: Spring Boot applies {@link MeterFilter} beans to
+ * every registry, otherwise use {@code registry.config().meterFilter(strategy)}.
+ */
+public class HistogramStrategy implements MeterFilter {
+
+    /**
+     * The tag telling clients apart.
+     */
+    public static final String CLIENT_TAG = "client";
+
+    private final Settings defaults;
+    private final Map<String, Settings> meters;
+    private final Map<String, Settings> clients;
+
+    public HistogramStrategy(Settings defaults) {
+        this(defaults, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param defaults the settings of every OkHttp3 timer
+     * @param meters   overrides by meter name, e.g. {@code okhttp3.network.requests.duration}
+     * @param clients  overrides by value of the {@value #CLIENT_TAG} tag
+     */
+    public HistogramStrategy(Settings defaults, Map<String, Settings> meters, Map<String, Settings> clients) {
+        this.defaults = Objects.requireNonNull(defaults, "defaults");
+        this.meters = meters == null ? Collections.emptyMap() : meters;
+        this.clients = clients == null ? Collections.emptyMap() : clients;
+    }
+
+    @Override
+    public DistributionStatisticConfig configure(@NonNull Meter.Id id, @NonNull DistributionStatisticConfig config) {
+        if (id.getType() != Meter.Type.TIMER || !id.getName().startsWith(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX)) {
+            return config;
+        }
+        Settings settings = defaults;
+        String client = id.getTag(CLIENT_TAG);
+        if (client != null) {
+            settings = settings.with(clients.get(client));
+        }
+        settings = settings.with(meters.get(id.getName()));
+        if (settings.getMode() == null) {
+            return config;
+        }
+        return settings.toConfig().merge(config);
+    }
+
+    /**
+     * The histogram settings of a timer; {@code null} fields are inherited.
+     */
+    @Data
+    public static class Settings {
+
+        /**
+         * How the distribution is published; unset keeps the distribution of the meter.
+         */
+        private HistogramMode mode;
+
+        /**
+         * The percentiles of {@link HistogramMode#PERCENTILES}.
+         */
+        private List<Double> percentiles;
+
+        /**
+         * The bucket boundaries of {@link HistogramMode#SLO}.
+         */
+        private List<Duration> slo;
+
+        /**
+         * The lower bound of the {@link HistogramMode#HISTOGRAM} buckets.
+         */
+        private Duration minimumExpectedValue;
+
+        /**
+         * The upper bound of the {@link HistogramMode#HISTOGRAM} buckets.
+         */
+        private Duration maximumExpectedValue;
+
+        /**
+         * No mode, so every timer keeps its own distribution, and the parameters of each mode once
+         * one is set: buckets from 1 ms to 10 s, the median, 95th and 99th percentiles, or a 100 ms
+         * objective.
+         */
+        public static Settings defaults() {
+            Settings settings = new Settings();
+            settings.setPercentiles(Arrays.asList(0.5, 0.95, 0.99));
+            settings.setSlo(Collections.singletonList(Duration.ofMillis(100)));
+            settings.setMinimumExpectedValue(Duration.ofMillis(1));
+            settings.setMaximumExpectedValue(Duration.ofSeconds(10));
+            return settings;
+        }
+
+        Settings with(@Nullable Settings override) {
+            if (override == null) {
+                return this;
+            }
+            Settings settings = new Settings();
+            settings.setMode(override.mode != null ? override.mode : mode);
+            settings.setPercentiles(override.percentiles != null ? override.percentiles : percentiles);
+            settings.setSlo(override.slo != null ? override.slo : slo);
+            settings.setMinimumExpectedValue(override.minimumExpectedValue != null ? override.minimumExpectedValue : minimumExpectedValue);
+            settings.setMaximumExpectedValue(override.maximumExpectedValue != null ? override.maximumExpectedValue : maximumExpectedValue);
+            return settings;
+        }
+
+        DistributionStatisticConfig toConfig() {
+            DistributionStatisticConfig.Builder builder = DistributionStatisticConfig.builder();
+            switch (mode) {
+                case PERCENTILES:
+                    builder.percentiles(percentiles == null ? new double[0]
+                            : percentiles.stream().mapToDouble(Double::doubleValue).toArray());
+                    break;
+                case HISTOGRAM:
+                    builder.percentilesHistogram(true);
+                    if (minimumExpectedValue != null) {
+                        builder.minimumExpectedValue((double) minimumExpectedValue.toNanos());
+                    }
+                    if (maximumExpectedValue != null) {
+                        builder.maximumExpectedValue((double) maximumExpectedValue.toNanos());
+                    }
+                    break;
+                case SLO:
+                    builder.serviceLevelObjectives(slo == null ? new double[0]
+                            : slo.stream().mapToDouble(d -> (double) d.toNanos()).toArray());
+                    break;
+                default:
+                    builder.percentiles(new double[0])
+                            .percentilesHistogram(false)
+                            .serviceLevelObjectives(new double[0]);
+                    break;
+            }
+            return builder.build();
+        }
+
+    }
+
+}
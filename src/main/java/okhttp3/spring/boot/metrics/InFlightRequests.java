@@ -0,0 +1,230 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-flight network requests, in total and per host, each with the high-water mark since the last
+ * scrape.
+ *
+ * <p>The total is a {@link LongAdder}, so concurrent requests to different hosts do not contend on
+ * one cache line; each host is its own stripe. The adder is only summed when a host reaches a new
+ * peak, so the total peak is exact for a single host and may miss a peak that no host shared. The
+ * peak gauges reset to the current value when read, so they report the highest concurrency of
+ * every scrape interval; with several scrapers of the same registry they split the intervals
+ * between them.
+ *
+ * <p>A registry keeps the gauge of the first registration of a meter id, so every instance
+ * resolving to the same id, e.g. two clients with the same tags or hosts a {@code MeterFilter}
+ * folds into one tag value, counts into the holder of that gauge. Hosts without requests for a
+ * minute are dropped, and their gauges removed once no instance uses them.
+ */
+final class InFlightRequests {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The gauge holders of each registry by the id their running gauge was registered with; guards
+     * every registration and removal.
+     */
+    private static final Map<MeterRegistry, Map<Meter.Id, Holder>> HOLDERS = new WeakHashMap<>();
+
+    private final MeterRegistry registry;
+    private final Clock clock;
+    private final String namePrefix;
+    private final Tags tags;
+
+    private final Total total;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    /** Guarded by {@link #HOLDERS}. */
+    private long lastSweep;
+
+    InFlightRequests(MeterRegistry registry, String namePrefix, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.clock = registry.config().clock();
+        this.namePrefix = namePrefix;
+        this.tags = Tags.of(tags);
+        this.lastSweep = clock.monotonicTime();
+        synchronized (HOLDERS) {
+            this.total = share(new Total(),
+                    total -> Gauge.builder(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_RUNNING, total.running, LongAdder::sum)
+                            .description("Network requests in flight")
+                            .tags(this.tags)
+                            .register(registry),
+                    total -> Gauge.builder(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_RUNNING_PEAK, total, Total::peakAndReset)
+                            .description("Highest number of network requests in flight since the last scrape")
+                            .tags(this.tags)
+                            .register(registry));
+        }
+    }
+
+    /**
+     * Marks a request to {@code host} as started.
+     *
+     * @return the stripe of the host, to be passed to {@link #end(Host)}
+     */
+    Host start(String host) {
+        Host stripe = hosts.get(host);
+        if (stripe == null) {
+            stripe = register(host);
+        }
+        total.running.increment();
+        if (stripe.start()) {
+            total.updatePeak();
+        }
+        return stripe;
+    }
+
+    void end(Host stripe) {
+        total.running.decrement();
+        stripe.end();
+    }
+
+    private Host register(String host) {
+        synchronized (HOLDERS) {
+            Host stripe = hosts.get(host);
+            if (stripe != null) {
+                return stripe;
+            }
+            sweep();
+            Tags hostTags = tags.and("host", host);
+            stripe = share(new Host(),
+                    h -> Gauge.builder(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_HOST_RUNNING, h.running, AtomicLong::get)
+                            .description("Network requests in flight to a host")
+                            .tags(hostTags)
+                            .register(registry),
+                    h -> Gauge.builder(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_HOST_RUNNING_PEAK, h, Host::peakAndReset)
+                            .description("Highest number of network requests in flight to a host since the last scrape")
+                            .tags(hostTags)
+                            .register(registry));
+            stripe.users++;
+            hosts.put(host, stripe);
+            return stripe;
+        }
+    }
+
+    /**
+     * Registers the gauges of {@code candidate}, or returns the holder already bound to them.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Holder> T share(T candidate, Function<T, Gauge> running, Function<T, Gauge> peak) {
+        Map<Meter.Id, Holder> holders = HOLDERS.computeIfAbsent(registry, r -> new HashMap<>());
+        Meter.Id id = running.apply(candidate).getId();
+        Holder existing = holders.get(id);
+        if (existing != null) {
+            return (T) existing;
+        }
+        candidate.runningId = id;
+        candidate.peakId = peak.apply(candidate).getId();
+        holders.put(id, candidate);
+        return candidate;
+    }
+
+    /**
+     * Drops the hosts without requests since the previous sweep, at most once a {@link
+     * #SWEEP_INTERVAL_NANOS minute}; called with {@link #HOLDERS} held, when a new host shows up.
+     */
+    private void sweep() {
+        long now = clock.monotonicTime();
+        if (now - lastSweep < SWEEP_INTERVAL_NANOS) {
+            return;
+        }
+        this.lastSweep = now;
+        Map<Meter.Id, Holder> holders = HOLDERS.get(registry);
+        hosts.values().removeIf(stripe -> {
+            if (stripe.touched || stripe.running.get() != 0) {
+                stripe.touched = false;
+                return false;
+            }
+            if (--stripe.users == 0) {
+                holders.remove(stripe.runningId);
+                registry.remove(stripe.runningId);
+                registry.remove(stripe.peakId);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * The value of a pair of running and peak gauges.
+     */
+    abstract static class Holder {
+
+        Meter.Id runningId;
+        Meter.Id peakId;
+
+    }
+
+    /**
+     * The in-flight requests in total.
+     */
+    static final class Total extends Holder {
+
+        private final LongAdder running = new LongAdder();
+        private final AtomicLong peak = new AtomicLong();
+
+        private void updatePeak() {
+            long current = running.sum();
+            if (current > peak.get()) {
+                peak.accumulateAndGet(current, Math::max);
+            }
+        }
+
+        private double peakAndReset() {
+            return peak.getAndSet(running.sum());
+        }
+
+    }
+
+    /**
+     * The in-flight requests to one host.
+     */
+    static final class Host extends Holder {
+
+        private final AtomicLong running = new AtomicLong();
+        private final AtomicLong peak = new AtomicLong();
+        /** Whether a request started since the last sweep. */
+        private volatile boolean touched;
+        /** The instances counting into this host; guarded by {@link #HOLDERS}. */
+        private int users;
+
+        /**
+         * @return whether this request is a new peak of the host
+         */
+        private boolean start() {
+            long current = running.incrementAndGet();
+            if (!touched) {
+                touched = true;
+            }
+            if (current > peak.get()) {
+                peak.accumulateAndGet(current, Math::max);
+                return true;
+            }
+            return false;
+        }
+
+        private void end() {
+            running.decrementAndGet();
+        }
+
+        private double peakAndReset() {
+            return peak.getAndSet(running.get());
+        }
+
+    }
+
+}
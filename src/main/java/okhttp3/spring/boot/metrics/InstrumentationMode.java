@@ -0,0 +1,25 @@
+package okhttp3.spring.boot.metrics;
+
+/**
+ * How an instrumented {@link okhttp3.OkHttpClient} records its requests.
+ */
+public enum InstrumentationMode {
+
+    /**
+     * Three independent layers: {@link InstrumentedInterceptor} for the network requests,
+     * {@code OkHttpObservationInterceptor} for the observation and {@code OkHttpMetricsEventListener}
+     * for the request timer. Each layer reads the clock and resolves its tags on its own.
+     */
+    LAYERED,
+    /**
+     * A single event listener owns the call lifecycle: it reads each timestamp once, builds the
+     * tags once per call and feeds the network request meters, the request timer and the
+     * observation from that single pass.
+     *
+     * <p>An event listener cannot modify requests, so the observation does not propagate trace
+     * headers in this mode; use {@link #LAYERED} when propagation is needed.
+     */
+    UNIFIED,
+    ;
+
+}
@@ -0,0 +1,227 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An {@link ExecutorService} for a {@link Dispatcher} that records how long asynchronous calls
+ * wait in the dispatcher, per host, and the depth of its ready queue.
+ *
+ * <p>The wait runs from {@link Call#enqueue} (the {@code callStart} event of the call's {@link
+ * InstrumentedEventListener}) to the moment an executor thread starts running the call; so calls
+ * held back by {@link Dispatcher#getMaxRequests()} or {@link Dispatcher#getMaxRequestsPerHost()}
+ * are included. The executor stamps the start of every task on its thread, and the listener of the
+ * call running there subtracts its {@code callStart} at its next event, see {@link
+ * #recordWait(Call, long)}; calls of a client that is not instrumented run without recording a
+ * wait. The queue depth is sampled whenever the dispatcher hands a call to the executor, which it
+ * does from {@code enqueue()} and whenever a running call finishes.
+ *
+ * <p>The threads of the executor are published by {@link OkHttpDispatcherMetrics}, which looks
+ * through this executor to its {@link #delegate()}.
+ */
+public class InstrumentedDispatcherExecutor implements ExecutorService {
+
+    public static final String METRIC_NAME_DISPATCHER_QUEUE_WAIT_DURATION 	= ".dispatcher.queue.wait.duration";
+    public static final String METRIC_NAME_DISPATCHER_QUEUE_DEPTH 			= ".dispatcher.queue.depth";
+
+    /**
+     * The task running on the current executor thread, reused by every task of the thread.
+     */
+    private static final ThreadLocal<Dispatch> DISPATCH = new ThreadLocal<>();
+
+    private final ExecutorService delegate;
+    private final Clock clock;
+    private final DistributionSummary queueDepth;
+    private final BoundedCache<String, Timer> queueWait;
+    @Nullable
+    private volatile Dispatcher dispatcher;
+
+    public InstrumentedDispatcherExecutor(ExecutorService delegate, MeterRegistry registry, String namePrefix, Iterable<Tag> tags) {
+        this(delegate, registry, registry.config().clock(), namePrefix, tags);
+    }
+
+    /**
+     * @param clock the clock of the {@link InstrumentedEventListener}s of the calls, whose {@code
+     *              callStart} the wait is measured from
+     */
+    public InstrumentedDispatcherExecutor(ExecutorService delegate, MeterRegistry registry, Clock clock, String namePrefix,
+                                          Iterable<Tag> tags) {
+        Tags executorTags = Tags.of(tags);
+        this.delegate = delegate;
+        this.clock = clock;
+        this.queueDepth = DistributionSummary.builder(namePrefix + METRIC_NAME_DISPATCHER_QUEUE_DEPTH)
+                .description("Calls waiting in the dispatcher, sampled when a call is handed to the executor")
+                .tags(executorTags)
+                .register(registry);
+        this.queueWait = new BoundedCache<>(1024, host -> Timer.builder(namePrefix + METRIC_NAME_DISPATCHER_QUEUE_WAIT_DURATION)
+                .description("Time asynchronous calls wait in the dispatcher before they run")
+                .tags(executorTags)
+                .tag("host", host)
+                .register(registry));
+    }
+
+    /**
+     * The executor the calls run on.
+     */
+    ExecutorService delegate() {
+        return delegate;
+    }
+
+    /**
+     * A copy of {@code dispatcher} whose executor is instrumented: same limits and executor, but
+     * without its idle callback, which cannot be read.
+     *
+     * <p>Only for a dispatcher nothing else references: calls and limits applied through the
+     * original, e.g. {@link Dispatcher#cancelAll()} or {@link Dispatcher#setMaxRequests(int)}, do
+     * not reach the copy.
+     */
+    public static Dispatcher instrument(Dispatcher dispatcher, MeterRegistry registry, String namePrefix, Iterable<Tag> tags) {
+        return instrument(dispatcher, registry, registry.config().clock(), namePrefix, tags);
+    }
+
+    /**
+     * @see #instrument(Dispatcher, MeterRegistry, String, Iterable)
+     */
+    public static Dispatcher instrument(Dispatcher dispatcher, MeterRegistry registry, Clock clock, String namePrefix,
+                                        Iterable<Tag> tags) {
+        InstrumentedDispatcherExecutor executor = new InstrumentedDispatcherExecutor(dispatcher.executorService(),
+                registry, clock, namePrefix, tags);
+        Dispatcher instrumented = new Dispatcher(executor);
+        instrumented.setMaxRequests(dispatcher.getMaxRequests());
+        instrumented.setMaxRequestsPerHost(dispatcher.getMaxRequestsPerHost());
+        executor.dispatcher = instrumented;
+        return instrumented;
+    }
+
+    /**
+     * Records the wait of {@code call} if it is the asynchronous call running on the current
+     * executor thread; the first event of the call there records it, the later ones do nothing.
+     * A synchronous call made while that call runs, e.g. from an interceptor, started after the
+     * task and is not taken for it.
+     *
+     * @param callStartNanos the {@code callStart} of {@code call}, on the clock of the executor
+     */
+    static void recordWait(Call call, long callStartNanos) {
+        Dispatch dispatch = DISPATCH.get();
+        if (dispatch == null) {
+            return;
+        }
+        InstrumentedDispatcherExecutor executor = dispatch.executor;
+        if (executor != null && dispatch.startNanos >= callStartNanos) {
+            dispatch.executor = null;
+            executor.queueWait.get(call.request().url().host()).record(dispatch.startNanos - callStartNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Dispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            queueDepth.record(dispatcher.queuedCallsCount());
+        }
+        delegate.execute(() -> {
+            Dispatch dispatch = DISPATCH.get();
+            if (dispatch == null) {
+                dispatch = new Dispatch();
+                DISPATCH.set(dispatch);
+            }
+            dispatch.startNanos = clock.monotonicTime();
+            dispatch.executor = this;
+            try {
+                command.run();
+            } finally {
+                dispatch.executor = null;
+            }
+        });
+    }
+
+    /**
+     * The start of the task running on an executor thread, until the call of the task records its
+     * wait.
+     */
+    private static final class Dispatch {
+
+        @Nullable
+        InstrumentedDispatcherExecutor executor;
+        long startNanos;
+
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(task);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return delegate.submit(task, result);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(task);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(tasks);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.invokeAll(tasks, timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(tasks);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(tasks, timeout, unit);
+    }
+
+}
@@ -0,0 +1,340 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A caching {@link Dns} in front of another one, {@link Dns#SYSTEM} by default.
+ *
+ * <ul>
+ *   <li>addresses are cached for {@link Settings#getTtl() ttl}, failures for {@link
+ *   Settings#getNegativeTtl() negativeTtl};</li>
+ *   <li>a lookup past {@link Settings#getRefreshAfter() refreshAfter} is answered from the cache
+ *   and refreshes the entry in the background, so a domain in steady use never blocks a call on
+ *   a resolver;</li>
+ *   <li>when an expired entry cannot be resolved again, its addresses are served for up to {@link
+ *   Settings#getMaxStale() maxStale} past their expiry, re-checked every {@code negativeTtl}.</li>
+ * </ul>
+ *
+ * <p>The JDK does not expose the TTL of a DNS record, so the TTLs are configured; keep them at or
+ * below the record TTLs of the upstreams. {@link Dns#SYSTEM} also goes through the JVM {@code
+ * InetAddress} cache ({@code networkaddress.cache.ttl}), which a refresh cannot bypass.
+ *
+ * <p>Publishes per domain the cache outcome of every lookup, the background refreshes and the
+ * latency of the lookups that reached the delegate. Like the cache, the meters are kept for at most
+ * {@link Settings#getMaxEntries() maxEntries} domains; further domains are tagged {@value
+ * CardinalityLimitMeterFilter#OTHER}.
+ */
+public class InstrumentedDns implements Dns, AutoCloseable {
+
+    public static final String METRIC_NAME_DNS_CACHE_REQUESTS 	= ".dns.cache.requests";
+    public static final String METRIC_NAME_DNS_REFRESHES 		= ".dns.refreshes";
+    public static final String METRIC_NAME_DNS_LOOKUP_DURATION 	= ".dns.lookup.duration";
+
+    private final MeterRegistry registry;
+    private final Dns delegate;
+    private final String namePrefix;
+    private final Tags tags;
+    private final Clock clock;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long refreshAfterNanos;
+    private final long maxStaleNanos;
+    private final BoundedMap<String, Entry> cache;
+    private final int maxDomains;
+    private final ConcurrentMap<String, Domain> domains = new ConcurrentHashMap<>();
+    /** The meters of the domains past {@link #maxDomains}, registered on first use. */
+    private volatile Domain otherDomains;
+    /** At most one refresh thread, which ends after a minute without refreshes. */
+    private final ExecutorService refresher = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "okhttp3-dns-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public InstrumentedDns(MeterRegistry registry, Dns delegate, Iterable<Tag> tags, Settings settings) {
+        this(registry, delegate, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, tags, settings, registry.config().clock());
+    }
+
+    public InstrumentedDns(MeterRegistry registry, Dns delegate, String namePrefix, Iterable<Tag> tags,
+                           Settings settings, Clock clock) {
+        if (settings.getTtl().isNegative() || settings.getTtl().isZero()) {
+            throw new IllegalArgumentException("ttl <= 0: " + settings.getTtl());
+        }
+        if (settings.getRefreshAfter().compareTo(settings.getTtl()) > 0) {
+            throw new IllegalArgumentException("refreshAfter > ttl: " + settings);
+        }
+        this.registry = registry;
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.namePrefix = namePrefix;
+        this.tags = Tags.of(tags);
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.ttlNanos = settings.getTtl().toNanos();
+        this.negativeTtlNanos = settings.getNegativeTtl().toNanos();
+        this.refreshAfterNanos = settings.getRefreshAfter().toNanos();
+        this.maxStaleNanos = settings.getMaxStale().toNanos();
+        this.maxDomains = settings.getMaxEntries();
+        this.cache = new BoundedMap<>(settings.getMaxEntries());
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = clock.monotonicTime();
+        Entry entry = cache.getIfPresent(hostname);
+        if (entry != null && now < entry.expiresAt) {
+            if (entry.failure != null) {
+                entry.domain.negativeHit.increment();
+                throw new UnknownHostException(entry.failure);
+            }
+            if (entry.stale) {
+                entry.domain.stale.increment();
+                return entry.addresses;
+            }
+            entry.domain.hit.increment();
+            if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                refresh(hostname, entry.domain);
+            }
+            return entry.addresses;
+        }
+        Domain domain = entry != null ? entry.domain : domain(hostname);
+        domain.miss.increment();
+        try {
+            List<InetAddress> addresses = resolve(hostname, domain);
+            cache.put(hostname, new Entry(domain, addresses, now + ttlNanos, now + refreshAfterNanos, now + ttlNanos + maxStaleNanos));
+            return addresses;
+        } catch (UnknownHostException e) {
+            if (entry != null && entry.addresses != null && now < entry.staleUntil) {
+                cache.put(hostname, Entry.stale(entry, now + negativeTtlNanos));
+                domain.stale.increment();
+                return entry.addresses;
+            }
+            cache.put(hostname, Entry.failed(domain, String.valueOf(e.getMessage()), now + negativeTtlNanos));
+            throw e;
+        }
+    }
+
+    private void refresh(String hostname, Domain domain) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    List<InetAddress> addresses = resolve(hostname, domain);
+                    long now = clock.monotonicTime();
+                    cache.put(hostname, new Entry(domain, addresses, now + ttlNanos, now + refreshAfterNanos, now + ttlNanos + maxStaleNanos));
+                    domain.refreshed.increment();
+                } catch (UnknownHostException e) {
+                    // the entry expires as usual, and the next lookup falls back to it if still stale-able
+                    domain.refreshFailed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private List<InetAddress> resolve(String hostname, Domain domain) throws UnknownHostException {
+        long start = clock.monotonicTime();
+        try {
+            List<InetAddress> addresses = delegate.lookup(hostname);
+            domain.lookupSuccess.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            return addresses;
+        } catch (UnknownHostException e) {
+            domain.lookupFailure.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Domain domain(String hostname) {
+        Domain domain = domains.get(hostname);
+        if (domain == null) {
+            if (domains.size() >= maxDomains) {
+                return otherDomains();
+            }
+            domain = domains.computeIfAbsent(hostname, this::register);
+        }
+        return domain;
+    }
+
+    private Domain otherDomains() {
+        Domain domain = otherDomains;
+        if (domain == null) {
+            // a race registers the same meters twice, which returns the same meters
+            domain = register(CardinalityLimitMeterFilter.OTHER);
+            otherDomains = domain;
+        }
+        return domain;
+    }
+
+    private Domain register(String hostname) {
+        Tags domainTags = tags.and("domain", hostname);
+        return new Domain(
+                cacheRequests(domainTags, "HIT"),
+                cacheRequests(domainTags, "NEGATIVE_HIT"),
+                cacheRequests(domainTags, "MISS"),
+                cacheRequests(domainTags, "STALE"),
+                refreshes(domainTags, "success"),
+                refreshes(domainTags, "failure"),
+                lookupDuration(domainTags, "success"),
+                lookupDuration(domainTags, "failure"));
+    }
+
+    private Counter cacheRequests(Tags domainTags, String result) {
+        return Counter.builder(namePrefix + METRIC_NAME_DNS_CACHE_REQUESTS)
+                .description("DNS lookups by cache outcome")
+                .tags(domainTags)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Counter refreshes(Tags domainTags, String outcome) {
+        return Counter.builder(namePrefix + METRIC_NAME_DNS_REFRESHES)
+                .description("Background refreshes of cached DNS entries")
+                .tags(domainTags)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer lookupDuration(Tags domainTags, String outcome) {
+        return Timer.builder(namePrefix + METRIC_NAME_DNS_LOOKUP_DURATION)
+                .description("DNS lookups of the delegate resolver")
+                .tags(domainTags)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * The meters of one domain.
+     */
+    private static final class Domain {
+
+        final Counter hit;
+        final Counter negativeHit;
+        final Counter miss;
+        final Counter stale;
+        final Counter refreshed;
+        final Counter refreshFailed;
+        final Timer lookupSuccess;
+        final Timer lookupFailure;
+
+        Domain(Counter hit, Counter negativeHit, Counter miss, Counter stale, Counter refreshed,
+               Counter refreshFailed, Timer lookupSuccess, Timer lookupFailure) {
+            this.hit = hit;
+            this.negativeHit = negativeHit;
+            this.miss = miss;
+            this.stale = stale;
+            this.refreshed = refreshed;
+            this.refreshFailed = refreshFailed;
+            this.lookupSuccess = lookupSuccess;
+            this.lookupFailure = lookupFailure;
+        }
+
+    }
+
+    /**
+     * The addresses of a domain, or the message of its failed lookup, until {@code expiresAt}.
+     */
+    private static final class Entry {
+
+        final Domain domain;
+        final List<InetAddress> addresses;
+        final String failure;
+        final long expiresAt;
+        final long refreshAt;
+        final long staleUntil;
+        final boolean stale;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Domain domain, List<InetAddress> addresses, String failure, long expiresAt, long refreshAt,
+                      long staleUntil, boolean stale) {
+            this.domain = domain;
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+            this.staleUntil = staleUntil;
+            this.stale = stale;
+        }
+
+        Entry(Domain domain, List<InetAddress> addresses, long expiresAt, long refreshAt, long staleUntil) {
+            this(domain, addresses, null, expiresAt, refreshAt, staleUntil, false);
+        }
+
+        static Entry failed(Domain domain, String failure, long expiresAt) {
+            return new Entry(domain, null, failure, expiresAt, expiresAt, expiresAt, false);
+        }
+
+        /**
+         * The addresses of an expired entry, served again until {@code expiresAt} but no longer
+         * than its stale deadline.
+         */
+        static Entry stale(Entry expired, long expiresAt) {
+            return new Entry(expired.domain, expired.addresses, null, Math.min(expiresAt, expired.staleUntil),
+                    expiresAt, expired.staleUntil, true);
+        }
+
+    }
+
+    /**
+     * The TTLs of {@link InstrumentedDns}.
+     */
+    @Data
+    public static class Settings {
+
+        /**
+         * Whether the client resolves through the caching Dns.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long resolved addresses are cached.
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+
+        /**
+         * How long a failed lookup is cached.
+         */
+        private Duration negativeTtl = Duration.ofSeconds(5);
+
+        /**
+         * Age after which a cached entry is refreshed in the background on its next lookup.
+         */
+        private Duration refreshAfter = Duration.ofSeconds(45);
+
+        /**
+         * How long past their expiry addresses are served when the domain cannot be resolved.
+         */
+        private Duration maxStale = Duration.ofMinutes(5);
+
+        /**
+         * Maximum number of cached domains, and of domains with their own meters.
+         */
+        private int maxEntries = 1024;
+
+    }
+
+}
@@ -19,13 +19,11 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.net.SocketTimeoutException;
-import java.util.Arrays;
 import java.util.List;
 
 import io.micrometer.common.lang.NonNull;
 import io.micrometer.common.lang.Nullable;
-import io.micrometer.core.instrument.*;
+import io.micrometer.observation.Observation;
 import okhttp3.Call;
 import okhttp3.Connection;
 import okhttp3.EventListener;
@@ -35,11 +33,13 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 /**
- * A client-scoped {@link EventListener} that records metrics around quantity, size, and duration of
- * HTTP calls using Dropwizard Metrics.
+ * A call-scoped {@link EventListener} that records metrics around quantity, size, and duration of
+ * HTTP calls using Micrometer.
  *
- * <p>This listener will receive ALL analytics events for {@link okhttp3.OkHttpClient the given
- * instrumented client}.
+ * <p>One listener is created per call by {@link InstrumentedEventListenerFactory}, which is
+ * installed on {@link okhttp3.OkHttpClient the given instrumented client}. The shared meters live
+ * in the factory; the listener keeps the {@link CallTimings} of its call and writes them into the
+ * phase timers when the call ends or fails.
  *
  * <p>This listener WILL NOT override a user-provided listener. It will ensure the user-provided
  * listener receives ALL analytics events as expected. Users usually configure a {@link
@@ -50,102 +50,100 @@ import okhttp3.Response;
  */
 final class InstrumentedEventListener extends EventListener {
 
-  private List<EventListener> delegates;
-
-  private final Counter callStart;
-  private final Counter callEnd;
-  private final Counter callFailed;
-  private final Timer callDuration;
-  private final Counter dnsStart;
-  private final Counter dnsEnd;
-  private final Timer dnsDuration;
-  private final Counter connectionStart;
-  private final Counter connectionEnd;
-  private final Counter connectionFailed;
-  private final Timer connectionDuration;
-  private final Counter connectionAcquired;
-  private final Counter connectionReleased;
-  private final Counter requestHeadersStart;
-  private final Counter requestHeadersEnd;
-  private final Counter requestBodyStart;
-  private final Counter requestBodyEnd;
-  private final DistributionSummary requestBodyBytes;
-  private final Counter requestFailed;
-
-  private final Counter responseHeadersStart;
-  private final Counter responseHeadersEnd;
-  private final Counter responseBodyStart;
-  private final DistributionSummary responseBodyBytes;
-  private final Counter responseBodyEnd;
-  private final Counter responseFailed;
-
-  InstrumentedEventListener(@NonNull MeterRegistry registry, EventListener ... delegates) {
-    this.delegates = Arrays.asList(delegates);
-
-    this.callStart = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_STARTED);
-    this.callEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_END);
-    this.callFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_FAILED);
-    this.callDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION);
-
-    this.dnsStart = registry.counter(OkHttp3Metrics.METRIC_NAME_DNS_STARTED);
-    this.dnsEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_DNS_END);
-    this.dnsDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_DNS_DURATION);
-
-    this.connectionStart = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_STARTED);
-    this.connectionEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_END);
-    this.connectionFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_FAILED);
-    this.connectionDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_DURATION);
-    this.connectionAcquired = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ACQUIRED);
-    this.connectionReleased = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_RELEASED);
-
-    this.requestHeadersStart = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_HEADERS_STARTED);
-    this.requestHeadersEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_HEADERS_END);
-    this.requestBodyStart = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_STARTED);
-    this.requestBodyEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_END);
-    this.requestBodyBytes = registry.summary(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_BYTES);
-    this.requestFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_FAILED);
-
-    this.responseHeadersStart = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_HEADERS_STARTED);
-    this.responseHeadersEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_HEADERS_END);
-    this.responseBodyStart = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_STARTED);
-    this.responseBodyBytes = registry.summary(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_BYTES);
-    this.responseBodyEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_END);
-    this.responseFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_FAILED);
+  private final InstrumentedEventListenerFactory meters;
+  private final EventListener delegate;
+  private final CallTimings timings = new CallTimings();
+
+  /** Single-pass state of {@link InstrumentationMode#UNIFIED}. */
+  @Nullable
+  private final UnifiedCallRecorder recorder;
+  @Nullable
+  private Response response;
+  @Nullable
+  private Observation observation;
+  @Nullable
+  private InFlightRequests.Host exchangeHost;
+  private boolean excluded;
+  /** Whether the {@link CallSampler} picked this call for its detailed meters. */
+  private boolean sampled;
+  /** The protocol of the last connection this call acquired. */
+  @Nullable
+  private Protocol protocol;
+  /** Whether this call established the connection it acquires next. */
+  private boolean connected;
+  /** The TLS handshake of the connection this call established, until it is acquired. */
+  @Nullable
+  private Handshake handshake;
+  private long handshakeNanos;
+  private long handshakeStartMillis;
+  /** The phase of the last failure, which tells a read from a write or connect timeout. */
+  @Nullable
+  private FailureClassifier.Phase failedPhase;
+
+  /**
+   * @param delegate the listener receiving every event after it has been recorded; a {@link
+   *     NestedEventListener} when several listeners are installed, so forwarding is a single
+   *     monomorphic call that never allocates.
+   */
+  InstrumentedEventListener(@NonNull InstrumentedEventListenerFactory meters, @NonNull EventListener delegate) {
+    this.meters = meters;
+    this.delegate = delegate;
+    this.recorder = meters.recorder;
+  }
 
+  private long now() {
+    return meters.clock.monotonicTime();
   }
 
   @Override
   public void callStart(@NonNull Call call) {
-    this.callStart.increment();
-    this.delegates.forEach(delegate -> delegate.callStart(call));
+    timings.callStart(now());
+    this.sampled = meters.sampler.sample();
+    if (recorder != null) {
+      this.excluded = UnifiedCallRecorder.excluded(call.request());
+      this.observation = recorder.startObservation(call.request());
+    }
+    meters.callStart.increment();
+    this.delegate.callStart(call);
   }
 
   @Override
   public void dnsStart(@NonNull Call call, @NonNull String domainName) {
-    this.dnsStart.increment();
-    this.delegates.forEach(delegate -> delegate.dnsStart(call, domainName));
+    timings.dnsStart(now());
+    meters.dnsStart.increment();
+    this.delegate.dnsStart(call, domainName);
   }
 
   @Override
   public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
-    this.dnsEnd.increment();
-    this.delegates.forEach(delegate -> delegate.dnsEnd(call, domainName, inetAddressList));
+    timings.dnsEnd(now());
+    meters.dnsEnd.increment();
+    this.delegate.dnsEnd(call, domainName, inetAddressList);
   }
 
   @Override
   public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
-    this.connectionStart.increment();
-     this.delegates.forEach(delegate -> delegate.connectStart(call, inetSocketAddress, proxy));
+    timings.connectStart(now());
+    meters.connectionStart.increment();
+    this.delegate.connectStart(call, inetSocketAddress, proxy);
   }
 
   @Override
   public void secureConnectStart(@NonNull Call call) {
-    this.delegates.forEach(delegate -> delegate.secureConnectStart(call));
+    timings.secureConnectStart(now());
+    // wall time, as SSLSession#getCreationTime is
+    this.handshakeStartMillis = System.currentTimeMillis();
+    this.delegate.secureConnectStart(call);
   }
 
   @Override
   public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
-    this.delegates.forEach(delegate -> delegate.secureConnectEnd(call, handshake));
+    long nanos = timings.secureConnectEnd(now());
+    if (handshake != null && nanos >= 0) {
+      this.handshake = handshake;
+      this.handshakeNanos = nanos;
+    }
+    this.delegate.secureConnectEnd(call, handshake);
   }
 
   @Override
@@ -154,8 +152,10 @@ final class InstrumentedEventListener extends EventListener {
       @NonNull InetSocketAddress inetSocketAddress,
       @NonNull Proxy proxy,
       @Nullable Protocol protocol) {
-    this.connectionEnd.increment();
-    this.delegates.forEach(delegate -> delegate.connectEnd(call, inetSocketAddress, proxy, protocol));
+    timings.connectEnd(now());
+    this.connected = true;
+    meters.connectionEnd.increment();
+    this.delegate.connectEnd(call, inetSocketAddress, proxy, protocol);
   }
 
   @Override
@@ -165,94 +165,155 @@ final class InstrumentedEventListener extends EventListener {
       @NonNull Proxy proxy,
       @Nullable Protocol protocol,
       @NonNull IOException ioe) {
-    this.connectionFailed.increment();
-    this.delegates.forEach(delegate -> delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe));
+    timings.connectEnd(now());
+    this.connected = false;
+    if (handshake != null) {
+      meters.tlsHandshakes.record(handshake, handshakeNanos, null);
+      this.handshake = null;
+    }
+    this.failedPhase = FailureClassifier.Phase.CONNECT;
+    meters.failures.record(call, ioe, FailureClassifier.Phase.CONNECT, null);
+    meters.connectionFailed.increment();
+    this.delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
   }
 
   @Override
   public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
-    this.connectionAcquired.increment();
-    this.delegates.forEach(delegate -> delegate.connectionAcquired(call, connection));
+    InstrumentedDispatcherExecutor.recordWait(call, timings.callStartNanos);
+    this.protocol = connection.protocol();
+    meters.connections.acquired(connection, connected);
+    this.connected = false;
+    if (handshake != null) {
+      meters.tlsHandshakes.record(handshake, handshakeNanos, TlsHandshakeMeters.resumed(connection, handshakeStartMillis));
+      this.handshake = null;
+    }
+    meters.connectionAcquired.increment();
+    this.delegate.connectionAcquired(call, connection);
   }
 
   @Override
   public void connectionReleased(@NonNull Call call, @NonNull Connection connection) {
-    this.connectionReleased.increment();
-    this.delegates.forEach(delegate -> delegate.connectionReleased(call, connection));
+    meters.connections.released(connection);
+    meters.connectionReleased.increment();
+    this.delegate.connectionReleased(call, connection);
   }
 
   @Override
   public void requestHeadersStart(@NonNull Call call) {
-    this.requestHeadersStart.increment();
-    this.delegates.forEach(delegate -> delegate.requestHeadersStart(call));
+    long now = now();
+    timings.requestStart(now);
+    if (recorder != null && !excluded) {
+      timings.exchangeStart(now);
+      this.exchangeHost = recorder.exchangeStart(call.request());
+    }
+    meters.requestHeadersStart.increment();
+    this.delegate.requestHeadersStart(call);
   }
 
   @Override
   public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
-    this.requestHeadersEnd.increment();
-    this.delegates.forEach(delegate -> delegate.requestHeadersEnd(call, request));
+    timings.requestEnd(now());
+    meters.requestHeadersEnd.increment();
+    this.delegate.requestHeadersEnd(call, request);
   }
 
   @Override
   public void requestBodyStart(@NonNull Call call) {
-    this.requestBodyStart.increment();
-    this.delegates.forEach(delegate -> delegate.requestBodyStart(call));
+    timings.requestStart(now());
+    meters.requestBodyStart.increment();
+    this.delegate.requestBodyStart(call);
   }
 
   @Override
   public void requestBodyEnd(@NonNull Call call, long byteCount) {
-    this.requestBodyBytes.record(byteCount);
-    this.requestBodyEnd.increment();
-    this.delegates.forEach(delegate -> delegate.requestBodyEnd(call, byteCount));
+    timings.requestEnd(now());
+    meters.requestBodyBytes.record(byteCount);
+    meters.requestBodyEnd.increment();
+    this.delegate.requestBodyEnd(call, byteCount);
   }
 
   @Override
   public void requestFailed(@NonNull Call call, @NonNull IOException ioe) {
-    this.requestFailed.increment();
-    this.delegates.forEach(delegate -> delegate.requestFailed(call, ioe));
+    exchangeEnd(now());
+    this.failedPhase = FailureClassifier.Phase.REQUEST;
+    meters.failures.record(call, ioe, FailureClassifier.Phase.REQUEST, null);
+    meters.requestFailed.increment();
+    this.delegate.requestFailed(call, ioe);
   }
 
   @Override
   public void responseHeadersStart(@NonNull Call call) {
-    this.responseHeadersStart.increment();
-    this.delegates.forEach(delegate -> delegate.responseHeadersStart(call));
+    timings.responseHeadersStart(now());
+    meters.responseHeadersStart.increment();
+    this.delegate.responseHeadersStart(call);
   }
 
 
   @Override
   public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
-    this.responseHeadersEnd.increment();
-    this.delegates.forEach(delegate -> delegate.responseHeadersEnd(call, response));
+    this.response = response;
+    exchangeEnd(now());
+    meters.responseHeadersEnd.increment();
+    this.delegate.responseHeadersEnd(call, response);
   }
 
   @Override
   public void responseBodyStart(@NonNull Call call) {
-    this.responseBodyStart.increment();
-    this.delegates.forEach(delegate -> delegate.responseBodyStart(call));
+    timings.responseBodyStart(now());
+    meters.responseBodyStart.increment();
+    this.delegate.responseBodyStart(call);
   }
 
   @Override
   public void responseBodyEnd(@NonNull Call call, long byteCount) {
-    this.responseBodyBytes.record(byteCount);
-    this.responseBodyEnd.increment();
-    this.delegates.forEach(delegate -> delegate.responseBodyEnd(call, byteCount));
+    timings.responseBodyEnd(now());
+    meters.responseBodyBytes.record(byteCount);
+    meters.responseBodyEnd.increment();
+    this.delegate.responseBodyEnd(call, byteCount);
   }
 
   @Override
   public void responseFailed(@NonNull Call call, @NonNull IOException ioe) {
-    this.responseFailed.increment();
-    this.delegates.forEach(delegate -> delegate.responseFailed(call, ioe));
+    exchangeEnd(now());
+    this.failedPhase = FailureClassifier.Phase.RESPONSE;
+    meters.failures.record(call, ioe, FailureClassifier.Phase.RESPONSE, null);
+    meters.responseFailed.increment();
+    this.delegate.responseFailed(call, ioe);
   }
 
   @Override
   public void callEnd(@NonNull Call call) {
-    this.callEnd.increment();
-    this.delegates.forEach(delegate -> delegate.callEnd(call));
+    callEnd(call, null);
+    meters.callEnd.increment();
+    this.delegate.callEnd(call);
   }
 
   @Override
   public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
-    this.callFailed.increment();
-    this.delegates.forEach(delegate -> delegate.callFailed(call, ioe));
+    callEnd(call, ioe);
+    meters.failures.record(call, ioe, FailureClassifier.Phase.CALL, failedPhase);
+    meters.callFailed.increment();
+    this.delegate.callFailed(call, ioe);
+  }
+
+  private void exchangeEnd(long now) {
+    if (recorder != null) {
+      long nanos = timings.exchangeEnd(now);
+      if (nanos >= 0) {
+        recorder.exchangeEnd(exchangeHost, nanos);
+      }
+    }
+  }
+
+  private void callEnd(Call call, @Nullable IOException ioe) {
+    long now = now();
+    InstrumentedDispatcherExecutor.recordWait(call, timings.callStartNanos);
+    timings.callEnd(now);
+    boolean detailed = meters.sampler.detailed(sampled, ioe != null, timings.callNanos);
+    meters.record(timings, protocol, detailed);
+    if (recorder != null) {
+      exchangeEnd(now);
+      recorder.callEnd(call.request(), response, ioe, timings.callNanos, observation, detailed);
+    }
   }
 }
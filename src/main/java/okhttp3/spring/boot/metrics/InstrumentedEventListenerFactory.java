@@ -0,0 +1,232 @@
+package okhttp3.spring.boot.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.common.lang.NonNull;
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.*;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * A client-scoped {@link EventListener.Factory} that creates one {@link InstrumentedEventListener}
+ * per call. The factory owns the meters, which are shared by every call of the client; each
+ * listener only keeps the {@link CallTimings} of its own call.
+ *
+ * <p>The delegate factories are asked for their listener of the same call, so a user-provided
+ * listener keeps receiving ALL analytics events.
+ */
+final class InstrumentedEventListenerFactory implements EventListener.Factory {
+
+  private final EventListener.Factory[] delegates;
+
+  final Clock clock;
+
+  /** Which calls get their phase timers recorded. */
+  final CallSampler sampler;
+
+  /**
+   * The single-pass outputs of {@link InstrumentationMode#UNIFIED}, or {@code null} in {@link
+   * InstrumentationMode#LAYERED}.
+   */
+  @Nullable
+  final UnifiedCallRecorder recorder;
+
+  final Counter callStart;
+  final Counter callEnd;
+  final Counter callFailed;
+  private final MeterRegistry registry;
+  private final Iterable<Tag> tags;
+  /**
+   * The call timers by the protocol of the last connection the call acquired, registered on first
+   * use: index 0 for calls without a connection, e.g. cache hits, then by {@link Protocol} ordinal.
+   */
+  private final Timer[] callDurations = new Timer[Protocol.values().length + 1];
+  final Counter dnsStart;
+  final Counter dnsEnd;
+  final Timer dnsDuration;
+  final Counter connectionStart;
+  final Counter connectionEnd;
+  final Counter connectionFailed;
+  final Timer connectionDuration;
+  final Timer secureConnectionDuration;
+  final Counter connectionAcquired;
+  final Counter connectionReleased;
+  final ConnectionTracker connections;
+  final TlsHandshakeMeters tlsHandshakes;
+  final FailureMeters failures;
+  final Counter requestHeadersStart;
+  final Counter requestHeadersEnd;
+  final Counter requestBodyStart;
+  final Counter requestBodyEnd;
+  final DistributionSummary requestBodyBytes;
+  final Counter requestFailed;
+  final Timer requestDuration;
+
+  final Counter responseHeadersStart;
+  final Counter responseHeadersEnd;
+  final Counter responseBodyStart;
+  final DistributionSummary responseBodyBytes;
+  final Counter responseBodyEnd;
+  final Counter responseFailed;
+  final Timer responseFirstByteDuration;
+  final Timer responseBodyDuration;
+
+  InstrumentedEventListenerFactory(@NonNull MeterRegistry registry, EventListener.Factory ... delegates) {
+    this(registry, null, delegates);
+  }
+
+  InstrumentedEventListenerFactory(@NonNull MeterRegistry registry, @Nullable UnifiedCallRecorder recorder,
+                                   EventListener.Factory ... delegates) {
+    this(registry, registry.config().clock(), recorder, delegates);
+  }
+
+  /**
+   * @param clock the monotonic time source of every phase timing; the registry clock unless a test
+   *     drives it
+   */
+  InstrumentedEventListenerFactory(@NonNull MeterRegistry registry, @NonNull Clock clock,
+                                   @Nullable UnifiedCallRecorder recorder, EventListener.Factory ... delegates) {
+    this(registry, Tags.empty(), clock, recorder, delegates);
+  }
+
+  /**
+   * @param tags the tags of every meter, e.g. the {@code client} tag of a named client
+   */
+  InstrumentedEventListenerFactory(@NonNull MeterRegistry registry, @NonNull Iterable<Tag> tags, @NonNull Clock clock,
+                                   @Nullable UnifiedCallRecorder recorder, EventListener.Factory ... delegates) {
+    this(registry, tags, clock, CallSampler.ALWAYS, recorder, delegates);
+  }
+
+  /**
+   * @param sampler which calls get their phase timers recorded; the counters, byte summaries and
+   *     call timer record every call
+   */
+  InstrumentedEventListenerFactory(@NonNull MeterRegistry registry, @NonNull Iterable<Tag> tags, @NonNull Clock clock,
+                                   @NonNull CallSampler sampler, @Nullable UnifiedCallRecorder recorder,
+                                   EventListener.Factory ... delegates) {
+    this.delegates = delegates;
+    this.clock = clock;
+    this.sampler = sampler;
+    this.recorder = recorder;
+
+    this.callStart = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_STARTED, tags);
+    this.callEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_END, tags);
+    this.callFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_CALLS_FAILED, tags);
+    this.registry = registry;
+    this.tags = tags;
+
+    this.dnsStart = registry.counter(OkHttp3Metrics.METRIC_NAME_DNS_STARTED, tags);
+    this.dnsEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_DNS_END, tags);
+    this.dnsDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_DNS_DURATION, tags);
+
+    this.connectionStart = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_STARTED, tags);
+    this.connectionEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_END, tags);
+    this.connectionFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_FAILED, tags);
+    this.connectionDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_DURATION, tags);
+    this.secureConnectionDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_SECURE_DURATION, tags);
+    this.connectionAcquired = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ACQUIRED, tags);
+    this.connectionReleased = registry.counter(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_RELEASED, tags);
+    this.connections = new ConnectionTracker(registry, tags, clock);
+    this.tlsHandshakes = new TlsHandshakeMeters(registry, tags);
+    this.failures = new FailureMeters(registry, tags);
+
+    this.requestHeadersStart = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_HEADERS_STARTED, tags);
+    this.requestHeadersEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_HEADERS_END, tags);
+    this.requestBodyStart = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_STARTED, tags);
+    this.requestBodyEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_END, tags);
+    this.requestBodyBytes = registry.summary(OkHttp3Metrics.METRIC_NAME_REQUESTS_BODY_BYTES, tags);
+    this.requestFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_REQUESTS_FAILED, tags);
+    this.requestDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_REQUESTS_WRITE_DURATION, tags);
+
+    this.responseHeadersStart = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_HEADERS_STARTED, tags);
+    this.responseHeadersEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_HEADERS_END, tags);
+    this.responseBodyStart = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_STARTED, tags);
+    this.responseBodyBytes = registry.summary(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_BYTES, tags);
+    this.responseBodyEnd = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_END, tags);
+    this.responseFailed = registry.counter(OkHttp3Metrics.METRIC_NAME_RESPONSES_FAILED, tags);
+    this.responseFirstByteDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_RESPONSES_FIRST_BYTE_DURATION, tags);
+    this.responseBodyDuration = registry.timer(OkHttp3Metrics.METRIC_NAME_RESPONSES_BODY_DURATION, tags);
+  }
+
+  @Override
+  public EventListener create(@NonNull Call call) {
+    if (Unmetered.isUnmetered(call.request())) {
+      return delegate(call);
+    }
+    return new InstrumentedEventListener(this, delegate(call));
+  }
+
+  /**
+   * Resolves the listeners of the delegate factories for the given call. The common case of a
+   * single live delegate is returned as is; only several live delegates are wrapped.
+   */
+  private EventListener delegate(Call call) {
+    EventListener single = EventListener.NONE;
+    List<EventListener> listeners = null;
+    for (EventListener.Factory factory : delegates) {
+      EventListener listener = factory.create(call);
+      if (listener == null || listener == EventListener.NONE) {
+        continue;
+      }
+      if (single == EventListener.NONE) {
+        single = listener;
+      } else {
+        if (listeners == null) {
+          listeners = new ArrayList<>(delegates.length);
+          listeners.add(single);
+        }
+        listeners.add(listener);
+      }
+    }
+    return listeners == null ? single : new NestedEventListener(listeners);
+  }
+
+  /**
+   * Writes the duration of a finished call into the call timer of its {@code protocol} and, if the
+   * call is {@code detailed}, its phase durations into the phase timers. Phases the call never went
+   * through (e.g. DNS and connect on a pooled connection) are not recorded.
+   *
+   * @param protocol the protocol of the last connection the call acquired, or {@code null}
+   */
+  void record(CallTimings timings, @Nullable Protocol protocol, boolean detailed) {
+    callDuration(protocol).record(timings.callNanos, TimeUnit.NANOSECONDS);
+    if (!detailed) {
+      return;
+    }
+    recordIfPresent(dnsDuration, timings.dnsNanos);
+    recordIfPresent(connectionDuration, timings.connectNanos);
+    recordIfPresent(secureConnectionDuration, timings.secureConnectNanos);
+    recordIfPresent(requestDuration, timings.requestNanos);
+    recordIfPresent(responseFirstByteDuration, timings.firstByteNanos);
+    recordIfPresent(responseBodyDuration, timings.responseBodyNanos);
+  }
+
+  /**
+   * The call timer tagged with {@code protocol}, e.g. {@code h2} or {@code http/1.1}, so calls
+   * multiplexed over HTTP/2 can be compared with HTTP/1.1 calls; {@code none} without a connection.
+   */
+  Timer callDuration(@Nullable Protocol protocol) {
+    int index = protocol == null ? 0 : protocol.ordinal() + 1;
+    Timer timer = callDurations[index];
+    if (timer == null) {
+      // racing registrations resolve to the same timer
+      timer = Timer.builder(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION)
+              .tags(tags)
+              .tag("protocol", protocol == null ? "none" : protocol.toString())
+              .register(registry);
+      callDurations[index] = timer;
+    }
+    return timer;
+  }
+
+  private static void recordIfPresent(Timer timer, long nanos) {
+    if (nanos > 0) {
+      timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+}
@@ -1,5 +1,6 @@
 package okhttp3.spring.boot.metrics;
 
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
@@ -17,6 +18,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * An {@link Interceptor} that monitors the number of submitted, running, and completed network
  * requests. Also, keeps a {@link Timer} for the request duration.
+ *
+ * <p>Running requests are gauges, in total and per host, see {@link InFlightRequests}.
  */
 @Order(Integer.MIN_VALUE)
 public class InstrumentedInterceptor implements Interceptor {
@@ -26,31 +29,51 @@ public class InstrumentedInterceptor implements Interceptor {
      */
     public static final String METRIC_NAME_NETWORK_REQUESTS_SUBMITTED 			= ".network.requests.submitted";
     public static final String METRIC_NAME_NETWORK_REQUESTS_RUNNING 			= ".network.requests.running";
+    public static final String METRIC_NAME_NETWORK_REQUESTS_RUNNING_PEAK 		= ".network.requests.running.peak";
+    public static final String METRIC_NAME_NETWORK_REQUESTS_HOST_RUNNING 		= ".network.requests.host.running";
+    public static final String METRIC_NAME_NETWORK_REQUESTS_HOST_RUNNING_PEAK 	= ".network.requests.host.running.peak";
     public static final String METRIC_NAME_NETWORK_REQUESTS_COMPLETED 			= ".network.requests.completed";
     public static final String METRIC_NAME_NETWORK_REQUESTS_DURATION 			= ".network.requests.duration";
 
     private Collection<Tag> tags;
     private final Counter submitted;
-    private final Counter running;
+    private final InFlightRequests running;
     private final Counter completed;
     private final Timer duration;
+    private final Clock clock;
 
     public InstrumentedInterceptor(MeterRegistry registry, Collection<Tag> tags) {
         this(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, tags);
     }
 
     public InstrumentedInterceptor(MeterRegistry registry, String namePrefix, Collection<Tag> tags) {
+        this(registry, namePrefix, tags, registry.config().clock());
+    }
+
+    /**
+     * @param clock the source of {@link Clock#monotonicTime()} for the request duration, normally
+     *              the registry clock
+     */
+    public InstrumentedInterceptor(MeterRegistry registry, String namePrefix, Collection<Tag> tags, Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "clock");
         this.tags = Objects.isNull(tags) ? Collections.emptyList() : tags;
         this.submitted = registry.counter(namePrefix + METRIC_NAME_NETWORK_REQUESTS_SUBMITTED, this.tags);
-        this.running = registry.counter(namePrefix + METRIC_NAME_NETWORK_REQUESTS_RUNNING, this.tags);
+        this.running = new InFlightRequests(registry, namePrefix, this.tags);
         this.completed = registry.counter(namePrefix + METRIC_NAME_NETWORK_REQUESTS_COMPLETED, this.tags);
-        this.duration = Timer.builder(namePrefix + METRIC_NAME_NETWORK_REQUESTS_DURATION)
-                // median and 95th percentile
-                .publishPercentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999)
-                .sla(Duration.ofMillis(100))
+        this.duration = durationTimer(registry, namePrefix, this.tags);
+    }
+
+    /**
+     * The network request duration {@link Timer}, shared with the unified instrumentation mode so
+     * both modes publish the same distribution. Publishes histogram buckets, which a {@link
+     * HistogramStrategy} can change.
+     */
+    static Timer durationTimer(MeterRegistry registry, String namePrefix, Iterable<Tag> tags) {
+        return Timer.builder(namePrefix + METRIC_NAME_NETWORK_REQUESTS_DURATION)
+                .publishPercentileHistogram()
                 .minimumExpectedValue(Duration.ofMillis(1))
                 .maximumExpectedValue(Duration.ofSeconds(10))
-                .tags(this.tags)
+                .tags(tags)
                 .register(registry);
     }
 
@@ -58,23 +81,23 @@ public class InstrumentedInterceptor implements Interceptor {
     public Response intercept(Interceptor.Chain chain) throws IOException {
         // 获取请求
         Request request = chain.request();
-        if(Objects.nonNull(request.header(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX))){
+        if(Unmetered.isUnmetered(request) || Objects.nonNull(request.header(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX))){
             return chain.proceed(request);
         }
         // 记录请求开始时间
-        long start = System.currentTimeMillis();
+        long start = clock.monotonicTime();
         // 一次请求计数 +1
         submitted.increment();
         // 当前正在运行的请求数 +1
-        running.increment();
+        InFlightRequests.Host host = running.start(request.url().host());
         Response response;
         try {
             response = chain.proceed(request);
         } finally {
             // 记录本次请求耗时
-            duration.record(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+            duration.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
             // 当前正在运行的请求数 -1
-            running.increment(-1);
+            running.end(host);
             // 当前已完成的请求数 +1
             completed.increment();
         }
@@ -16,6 +16,7 @@
 package okhttp3.spring.boot.metrics;
 
 import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.binder.okhttp3.DefaultOkHttpObservationConvention;
@@ -33,9 +34,11 @@ import java.net.Proxy;
 import java.net.ProxySelector;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /** Wraps an {@link OkHttpClient} in order to provide data about its internals. */
@@ -52,42 +55,89 @@ final class InstrumentedOkHttpClient extends OkHttpClient {
 
   List<String> requestTagKeys;
 
-  UrlMapperEnum urlMapper;
+  Function<Request, String> urlMapper;
 
   boolean includeHostTag;
 
-  InstrumentedOkHttpClient(MeterRegistry registry,
-                           OkHttpClient rawClient,
-                           Map<String, String > extraTagMap,
-                           List<String> requestTagKeys,
-                           List<BiFunction<Request, Response, KeyValue>> contextSpecificTags,
-                           UrlMapperEnum urlMapper,
-                           boolean includeHostTag) {
-    this.rawClient = rawClient;
-    this.registry = registry;
+  private final ObservationRegistry observationRegistry;
+
+  private final Clock clock;
+
+  private final CallSampler sampler;
+
+  InstrumentedOkHttpClient(InstrumentedOkHttpClients.Builder builder) {
+    this.rawClient = builder.client;
+    this.registry = builder.registry;
+    Map<String, String> extraTagMap = builder.extraTags;
+    if (builder.clientName != null) {
+      extraTagMap = new LinkedHashMap<>(extraTagMap);
+      extraTagMap.put(HistogramStrategy.CLIENT_TAG, builder.clientName);
+    }
     this.extraTags = CollectionUtils.isEmpty(extraTagMap) ? new ArrayList<>()  : extraTagMap
             .entrySet().stream().map(e -> Tag.of(e.getKey(), e.getValue())).collect(Collectors.toList());
     this.kvTags = CollectionUtils.isEmpty(extraTagMap) ? new ArrayList<>() : extraTagMap
             .entrySet().stream().map(e -> KeyValue.of(e.getKey(), e.getValue())).collect(Collectors.toList());
-    this.contextSpecificTags = contextSpecificTags;
-    this.requestTagKeys = CollectionUtils.isEmpty(requestTagKeys) ? new ArrayList<>() : requestTagKeys;
-    this.urlMapper = urlMapper;
-    this.includeHostTag = includeHostTag;
-    instrumentNetworkRequests();
-    instrumentEventListener();
+    this.contextSpecificTags = builder.contextSpecificTags;
+    this.requestTagKeys = CollectionUtils.isEmpty(builder.requestTagKeys) ? new ArrayList<>() : builder.requestTagKeys;
+    this.urlMapper = builder.urlMapper;
+    this.includeHostTag = builder.includeHostTag;
+    this.observationRegistry = builder.observationRegistry;
+    this.clock = builder.clock == null ? registry.config().clock() : builder.clock;
+    this.sampler = builder.sampling == null ? CallSampler.ALWAYS : new CallSampler(builder.sampling);
+    if (builder.instrumentDispatcher) {
+      instrumentDispatcher();
+    }
+    if (builder.mode == InstrumentationMode.UNIFIED) {
+      instrumentUnified();
+    } else {
+      instrumentNetworkRequests();
+      instrumentEventListener();
+    }
+    if (builder.concurrencyLimit != null) {
+      instrumentConcurrencyLimit(builder.concurrencyLimit);
+    }
+    instrumentCache();
+  }
+
+  private void instrumentDispatcher() {
+    this.rawClient = this.rawClient
+            .newBuilder()
+            .dispatcher(InstrumentedDispatcherExecutor.instrument(rawClient.dispatcher(), registry, clock,
+                    OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX, extraTags))
+            .build();
+  }
+
+  private void instrumentConcurrencyLimit(AdaptiveConcurrencyLimiter.Settings settings) {
+    OkHttpClient.Builder builder = rawClient.newBuilder();
+    builder.interceptors().add(0, new AdaptiveConcurrencyLimiter(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+            extraTags, settings, clock));
+    rawClient = builder.build();
+  }
+
+  /**
+   * Records the cache outcome of every request, when the client has an HTTP cache.
+   */
+  private void instrumentCache() {
+    if (rawClient.cache() == null) {
+      return;
+    }
+    OkHttpClient.Builder builder = rawClient.newBuilder();
+    builder.interceptors().add(0, new CacheOutcomeInterceptor(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+            extraTags, urlMapper, clock, rawClient.cache()));
+    rawClient = builder.build();
   }
 
   private void instrumentNetworkRequests() {
 
-    InstrumentedInterceptor metricsInterceptor = new InstrumentedInterceptor(registry, extraTags);
+    InstrumentedInterceptor metricsInterceptor = new InstrumentedInterceptor(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, extraTags, clock);
 
     OkHttpObservationConvention observationConvention = new DefaultOkHttpObservationConvention(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX);
 
     OkHttpObservationInterceptor observationInterceptor = new OkHttpObservationInterceptor(
-            ObservationRegistry.create(),
+            observationRegistry,
             observationConvention,
             OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX,
-            urlMapper.get(),
+            urlMapper,
             kvTags,
             contextSpecificTags,
             requestTagKeys,
@@ -96,7 +146,8 @@ final class InstrumentedOkHttpClient extends OkHttpClient {
 
     OkHttpClient.Builder builder = rawClient.newBuilder();
     builder.networkInterceptors().add(0, metricsInterceptor);
-    builder.networkInterceptors().add(1, observationInterceptor);
+    builder.networkInterceptors().add(1, chain -> Unmetered.isUnmetered(chain.request())
+            ? chain.proceed(chain.request()) : observationInterceptor.intercept(chain));
     rawClient = builder.build();
   }
 
@@ -106,12 +157,29 @@ final class InstrumentedOkHttpClient extends OkHttpClient {
             .tags(extraTags)
             .requestTagKeys(requestTagKeys)
             .includeHostTag(includeHostTag)
-            .uriMapper(urlMapper.get())
+            .uriMapper(urlMapper)
+            .build();
+
+    this.rawClient = this.rawClient
+            .newBuilder()
+            .eventListenerFactory(new InstrumentedEventListenerFactory(registry, extraTags, clock, sampler, null,
+                    this.rawClient.eventListenerFactory(),
+                    call -> Unmetered.isUnmetered(call.request()) ? EventListener.NONE : metricsEventListener))
             .build();
+  }
+
+  /**
+   * {@link InstrumentationMode#UNIFIED}: no interceptors, the event listener records everything.
+   */
+  private void instrumentUnified() {
+
+    UnifiedCallRecorder recorder = new UnifiedCallRecorder(registry, observationRegistry, extraTags,
+            contextSpecificTags, urlMapper, includeHostTag);
 
     this.rawClient = this.rawClient
             .newBuilder()
-            .eventListener(new InstrumentedEventListener(registry, metricsEventListener))
+            .eventListenerFactory(new InstrumentedEventListenerFactory(registry, extraTags, clock, sampler, recorder,
+                    this.rawClient.eventListenerFactory()))
             .build();
   }
 
@@ -1,7 +1,9 @@
 package okhttp3.spring.boot.metrics;
 
 import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -9,7 +11,9 @@ import okhttp3.Response;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Static factory methods for instrumenting an {@link OkHttpClient}.
@@ -18,18 +22,18 @@ import java.util.function.BiFunction;
 public final class InstrumentedOkHttpClients {
 
   public static OkHttpClient create(MeterRegistry registry) {
-    return new InstrumentedOkHttpClient(registry, new OkHttpClient(), Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), UrlMapperEnum.ENCODED_PATH, false);
+    return builder(registry, new OkHttpClient()).build();
   }
 
   public static OkHttpClient create(MeterRegistry registry,
                                     OkHttpClient client) {
-    return new InstrumentedOkHttpClient(registry, client, Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), UrlMapperEnum.ENCODED_PATH, false);
+    return builder(registry, client).build();
   }
 
   public static OkHttpClient create(MeterRegistry registry,
                                     OkHttpClient client,
                                     boolean includeHostTag) {
-    return new InstrumentedOkHttpClient(registry, client, Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), UrlMapperEnum.ENCODED_PATH, includeHostTag);
+    return builder(registry, client).includeHostTag(includeHostTag).build();
   }
 
 
@@ -37,7 +41,7 @@ public final class InstrumentedOkHttpClients {
                                     OkHttpClient client,
                                     UrlMapperEnum urlMapper,
                                     boolean includeHostTag) {
-    return new InstrumentedOkHttpClient(registry, client, Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), urlMapper, includeHostTag);
+    return builder(registry, client).urlMapper(urlMapper).includeHostTag(includeHostTag).build();
   }
 
   public static OkHttpClient create(MeterRegistry registry,
@@ -45,7 +49,11 @@ public final class InstrumentedOkHttpClients {
                                     List<BiFunction<Request, Response, KeyValue>> contextSpecificTags,
                                     UrlMapperEnum urlMapper,
                                     boolean includeHostTag) {
-    return new InstrumentedOkHttpClient(registry, client, Collections.emptyMap(), Collections.emptyList(), contextSpecificTags, urlMapper, includeHostTag);
+    return builder(registry, client)
+            .contextSpecificTags(contextSpecificTags)
+            .urlMapper(urlMapper)
+            .includeHostTag(includeHostTag)
+            .build();
   }
 
   public static OkHttpClient create(MeterRegistry registry,
@@ -55,7 +63,157 @@ public final class InstrumentedOkHttpClients {
                                     List<BiFunction<Request, Response, KeyValue>> contextSpecificTags,
                                     UrlMapperEnum urlMapper,
                                     boolean includeHostTag) {
-    return new InstrumentedOkHttpClient(registry, client, extraTagMap, requestTagKeys, contextSpecificTags, urlMapper, includeHostTag);
+    return builder(registry, client)
+            .extraTags(extraTagMap)
+            .requestTagKeys(requestTagKeys)
+            .contextSpecificTags(contextSpecificTags)
+            .urlMapper(urlMapper)
+            .includeHostTag(includeHostTag)
+            .build();
+  }
+
+  /**
+   * Whether {@code client} is instrumented: created by {@link Builder#build()}, or derived from
+   * such a client by {@link OkHttpClient#newBuilder()}, which keeps the interceptors and the
+   * event listener factory and so shares their meters.
+   */
+  public static boolean isInstrumented(OkHttpClient client) {
+    return client instanceof InstrumentedOkHttpClient
+        || client.eventListenerFactory() instanceof InstrumentedEventListenerFactory;
+  }
+
+  public static Builder builder(MeterRegistry registry, OkHttpClient client) {
+    return new Builder(registry, client);
+  }
+
+  /**
+   * Builder for an instrumented {@link OkHttpClient}; every option defaults to the behaviour of
+   * {@link #create(MeterRegistry, OkHttpClient)}.
+   */
+  public static final class Builder {
+
+    final MeterRegistry registry;
+    final OkHttpClient client;
+    Map<String, String> extraTags = Collections.emptyMap();
+    List<String> requestTagKeys = Collections.emptyList();
+    List<BiFunction<Request, Response, KeyValue>> contextSpecificTags = Collections.emptyList();
+    Function<Request, String> urlMapper = UrlMapperEnum.ENCODED_PATH.get();
+    boolean includeHostTag;
+    InstrumentationMode mode = InstrumentationMode.LAYERED;
+    // a registry without handlers records nothing either; NOOP also skips creating the observations
+    ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+    Clock clock;
+    boolean instrumentDispatcher;
+    AdaptiveConcurrencyLimiter.Settings concurrencyLimit;
+    String clientName;
+    CallSampler.Settings sampling;
+
+    Builder(MeterRegistry registry, OkHttpClient client) {
+      this.registry = Objects.requireNonNull(registry, "registry");
+      this.client = Objects.requireNonNull(client, "client");
+    }
+
+    public Builder extraTags(Map<String, String> extraTags) {
+      this.extraTags = extraTags == null ? Collections.emptyMap() : extraTags;
+      return this;
+    }
+
+    public Builder requestTagKeys(List<String> requestTagKeys) {
+      this.requestTagKeys = requestTagKeys == null ? Collections.emptyList() : requestTagKeys;
+      return this;
+    }
+
+    public Builder contextSpecificTags(List<BiFunction<Request, Response, KeyValue>> contextSpecificTags) {
+      this.contextSpecificTags = contextSpecificTags == null ? Collections.emptyList() : contextSpecificTags;
+      return this;
+    }
+
+    public Builder urlMapper(UrlMapperEnum urlMapper) {
+      return urlMapper(urlMapper.get());
+    }
+
+    public Builder urlMapper(Function<Request, String> urlMapper) {
+      this.urlMapper = Objects.requireNonNull(urlMapper, "urlMapper");
+      return this;
+    }
+
+    public Builder includeHostTag(boolean includeHostTag) {
+      this.includeHostTag = includeHostTag;
+      return this;
+    }
+
+    /**
+     * @see InstrumentationMode
+     */
+    public Builder mode(InstrumentationMode mode) {
+      this.mode = Objects.requireNonNull(mode, "mode");
+      return this;
+    }
+
+    public Builder observationRegistry(ObservationRegistry observationRegistry) {
+      this.observationRegistry = Objects.requireNonNull(observationRegistry, "observationRegistry");
+      return this;
+    }
+
+    /**
+     * The monotonic time source of every request and phase timing; defaults to the registry
+     * clock, tests can pass a {@code MockClock}.
+     */
+    public Builder clock(Clock clock) {
+      this.clock = Objects.requireNonNull(clock, "clock");
+      return this;
+    }
+
+    /**
+     * Whether to replace the dispatcher of the client with a copy whose executor records the
+     * queue wait of asynchronous calls, see {@link InstrumentedDispatcherExecutor#instrument}; off
+     * by default. Only for a client whose dispatcher nothing else references.
+     */
+    public Builder instrumentDispatcher(boolean instrumentDispatcher) {
+      this.instrumentDispatcher = instrumentDispatcher;
+      return this;
+    }
+
+    /**
+     * Limits the concurrent calls to each host with an {@link AdaptiveConcurrencyLimiter}; no limit
+     * when {@code null}.
+     */
+    public Builder concurrencyLimit(AdaptiveConcurrencyLimiter.Settings concurrencyLimit) {
+      this.concurrencyLimit = concurrencyLimit;
+      return this;
+    }
+
+    /**
+     * Records the phase timers and, in {@link InstrumentationMode#UNIFIED}, the context specific
+     * tags of only a sample of the calls plus every slow or failed one, see {@link CallSampler};
+     * every call is detailed when {@code null}.
+     */
+    public Builder sampling(CallSampler.Settings sampling) {
+      this.sampling = sampling;
+      return this;
+    }
+
+    /**
+     * Tags every meter of the client with {@code client=<clientName>}, so several clients can share
+     * a registry; see also the client settings of {@link HistogramStrategy}.
+     */
+    public Builder clientName(String clientName) {
+      this.clientName = Objects.requireNonNull(clientName, "clientName");
+      return this;
+    }
+
+    /**
+     * Instruments the client, or returns it as is if it {@link #isInstrumented(OkHttpClient) is
+     * instrumented} already: instrumenting twice would stack the interceptors and listeners and
+     * record every call twice. The options of this builder are then ignored.
+     */
+    public OkHttpClient build() {
+      if (isInstrumented(client)) {
+        return client;
+      }
+      return new InstrumentedOkHttpClient(this);
+    }
+
   }
 
   private InstrumentedOkHttpClients() {
@@ -1,18 +1,189 @@
 package okhttp3.spring.boot.metrics;
 
+import io.micrometer.common.lang.NonNull;
+import io.micrometer.common.lang.Nullable;
+import okhttp3.Call;
+import okhttp3.Connection;
 import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
 import java.util.List;
 
+/**
+ * An {@link EventListener} that forwards every event to a fixed list of listeners, in order.
+ *
+ * <p>The listeners are held in an array and walked with a plain loop, so forwarding an event
+ * does not allocate.
+ */
 public class NestedEventListener extends EventListener {
 
-    private List<EventListener> eventListeners;
+    private final EventListener[] eventListeners;
 
     public NestedEventListener(List<EventListener> eventListeners) {
-        this.eventListeners = eventListeners;
+        this.eventListeners = eventListeners.toArray(new EventListener[0]);
     }
 
+    @Override
+    public void callStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.callStart(call);
+        }
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+        for (EventListener listener : eventListeners) {
+            listener.dnsStart(call, domainName);
+        }
+    }
 
+    @Override
+    public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+        for (EventListener listener : eventListeners) {
+            listener.dnsEnd(call, domainName, inetAddressList);
+        }
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+        for (EventListener listener : eventListeners) {
+            listener.connectStart(call, inetSocketAddress, proxy);
+        }
+    }
 
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.secureConnectStart(call);
+        }
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
+        for (EventListener listener : eventListeners) {
+            listener.secureConnectEnd(call, handshake);
+        }
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+                           @Nullable Protocol protocol) {
+        for (EventListener listener : eventListeners) {
+            listener.connectEnd(call, inetSocketAddress, proxy, protocol);
+        }
+    }
+
+    @Override
+    public void connectFailed(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy,
+                              @Nullable Protocol protocol, @NonNull IOException ioe) {
+        for (EventListener listener : eventListeners) {
+            listener.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+        }
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        for (EventListener listener : eventListeners) {
+            listener.connectionAcquired(call, connection);
+        }
+    }
+
+    @Override
+    public void connectionReleased(@NonNull Call call, @NonNull Connection connection) {
+        for (EventListener listener : eventListeners) {
+            listener.connectionReleased(call, connection);
+        }
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.requestHeadersStart(call);
+        }
+    }
+
+    @Override
+    public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
+        for (EventListener listener : eventListeners) {
+            listener.requestHeadersEnd(call, request);
+        }
+    }
+
+    @Override
+    public void requestBodyStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.requestBodyStart(call);
+        }
+    }
+
+    @Override
+    public void requestBodyEnd(@NonNull Call call, long byteCount) {
+        for (EventListener listener : eventListeners) {
+            listener.requestBodyEnd(call, byteCount);
+        }
+    }
+
+    @Override
+    public void requestFailed(@NonNull Call call, @NonNull IOException ioe) {
+        for (EventListener listener : eventListeners) {
+            listener.requestFailed(call, ioe);
+        }
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.responseHeadersStart(call);
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+        for (EventListener listener : eventListeners) {
+            listener.responseHeadersEnd(call, response);
+        }
+    }
+
+    @Override
+    public void responseBodyStart(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.responseBodyStart(call);
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        for (EventListener listener : eventListeners) {
+            listener.responseBodyEnd(call, byteCount);
+        }
+    }
+
+    @Override
+    public void responseFailed(@NonNull Call call, @NonNull IOException ioe) {
+        for (EventListener listener : eventListeners) {
+            listener.responseFailed(call, ioe);
+        }
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        for (EventListener listener : eventListeners) {
+            listener.callEnd(call);
+        }
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        for (EventListener listener : eventListeners) {
+            listener.callFailed(call, ioe);
+        }
+    }
 
 }
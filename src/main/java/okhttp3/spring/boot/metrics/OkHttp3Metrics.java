@@ -69,8 +69,19 @@ public abstract class OkHttp3Metrics implements MeterBinder, ApplicationListener
 	public static final String METRIC_NAME_CONNECTIONS_END 				= OKHTTP3_METRIC_NAME_PREFIX + ".connections.end";
 	public static final String METRIC_NAME_CONNECTIONS_FAILED 			= OKHTTP3_METRIC_NAME_PREFIX + ".connections.failed";
 	public static final String METRIC_NAME_CONNECTIONS_DURATION 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.duration";
+	public static final String METRIC_NAME_CONNECTIONS_SECURE_DURATION 	= OKHTTP3_METRIC_NAME_PREFIX + ".connections.secure.duration";
 	public static final String METRIC_NAME_CONNECTIONS_ACQUIRED 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.acquired";
 	public static final String METRIC_NAME_CONNECTIONS_RELEASED 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.released";
+	public static final String METRIC_NAME_CONNECTIONS_ACQUISITIONS 	= OKHTTP3_METRIC_NAME_PREFIX + ".connections.acquisitions";
+	public static final String METRIC_NAME_CONNECTIONS_LIFETIME 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.lifetime";
+	public static final String METRIC_NAME_CONNECTIONS_REQUESTS 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.requests";
+	public static final String METRIC_NAME_CONNECTIONS_ROUTE_ACTIVE 	= OKHTTP3_METRIC_NAME_PREFIX + ".connections.route.active";
+	public static final String METRIC_NAME_CONNECTIONS_ROUTE_IDLE 		= OKHTTP3_METRIC_NAME_PREFIX + ".connections.route.idle";
+	public static final String METRIC_NAME_CONNECTIONS_ROUTE_H2_STREAMS = OKHTTP3_METRIC_NAME_PREFIX + ".connections.route.h2.streams";
+	/**
+	 * tls
+	 */
+	public static final String METRIC_NAME_TLS_HANDSHAKE_DURATION 		= OKHTTP3_METRIC_NAME_PREFIX + ".tls.handshake.duration";
 	/**
 	 * requests
 	 */
@@ -80,6 +91,7 @@ public abstract class OkHttp3Metrics implements MeterBinder, ApplicationListener
 	public static final String METRIC_NAME_REQUESTS_BODY_END					= OKHTTP3_METRIC_NAME_PREFIX + ".requests.body.end";
 	public static final String METRIC_NAME_REQUESTS_BODY_BYTES					= OKHTTP3_METRIC_NAME_PREFIX + ".requests.body.bytes";
 	public static final String METRIC_NAME_REQUESTS_FAILED 					= OKHTTP3_METRIC_NAME_PREFIX + ".requests.failed";
+	public static final String METRIC_NAME_REQUESTS_WRITE_DURATION 			= OKHTTP3_METRIC_NAME_PREFIX + ".requests.write.duration";
 	/**
 	 * responses
 	 */
@@ -89,6 +101,8 @@ public abstract class OkHttp3Metrics implements MeterBinder, ApplicationListener
 	public static final String METRIC_NAME_RESPONSES_BODY_BYTES					= OKHTTP3_METRIC_NAME_PREFIX + ".responses.body.bytes";
 	public static final String METRIC_NAME_RESPONSES_BODY_END 			= OKHTTP3_METRIC_NAME_PREFIX + ".responses.body.end";
 	public static final String METRIC_NAME_RESPONSES_FAILED 			= OKHTTP3_METRIC_NAME_PREFIX + ".responses.failed";
+	public static final String METRIC_NAME_RESPONSES_FIRST_BYTE_DURATION 	= OKHTTP3_METRIC_NAME_PREFIX + ".responses.first.byte.duration";
+	public static final String METRIC_NAME_RESPONSES_BODY_DURATION 		= OKHTTP3_METRIC_NAME_PREFIX + ".responses.body.duration";
 
 	/**
 	 * timeout
@@ -98,6 +112,10 @@ public abstract class OkHttp3Metrics implements MeterBinder, ApplicationListener
 	public static final String METRIC_NAME_READ_TIMEOUT_COUNT 			= OKHTTP3_METRIC_NAME_PREFIX + ".read.timeout.count";
 	public static final String METRIC_NAME_WRITE_TIMEOUT_COUNT 		= OKHTTP3_METRIC_NAME_PREFIX + ".write.timeout.count";
 	public static final String METRIC_NAME_PING_FAIL_COUNT 			= OKHTTP3_METRIC_NAME_PREFIX + ".ping.fail.count";
+	/**
+	 * failures, tagged with host, phase and cause
+	 */
+	public static final String METRIC_NAME_FAILURES 				= OKHTTP3_METRIC_NAME_PREFIX + ".failures";
 
 
 	private OkHttpClient okhttp3Client;
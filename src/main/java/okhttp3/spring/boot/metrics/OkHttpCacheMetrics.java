@@ -20,11 +20,19 @@ import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OkHttp3 Cache Metrics
+ *
+ * <p>The gauges read a snapshot of the {@link Cache} statistics that a daemon thread refreshes
+ * every {@code refreshInterval}: {@link Cache#size()} takes the disk cache lock and may do file
+ * I/O, which must not happen on the scrape thread. Nothing is bound when the client has no cache.
  */
-public class OkHttpCacheMetrics extends OkHttp3Metrics {
+public class OkHttpCacheMetrics extends OkHttp3Metrics implements AutoCloseable {
 
 	/**
 	 * http cache
@@ -36,35 +44,110 @@ public class OkHttpCacheMetrics extends OkHttp3Metrics {
 	public static final String METRIC_NAME_CACHE_WRITE_ABORT_COUNT		=  ".cache.write.abort.count";
 	public static final String METRIC_NAME_CACHE_CURRENT_SIZE 			=  ".cache.current.size";
 	public static final String METRIC_NAME_CACHE_MAX_SIZE 				=  ".cache.max.size";
+	public static final String METRIC_NAME_CACHE_HIT_RATIO 				=  ".cache.hit.ratio";
+	public static final String METRIC_NAME_CACHE_NETWORK_RATIO 			=  ".cache.network.ratio";
+
+	public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(15);
+
+	private final Duration refreshInterval;
+	private final Snapshot snapshot = new Snapshot();
+	private ScheduledExecutorService refresher;
 
 	public OkHttpCacheMetrics(OkHttpClient okhttp3Client) {
 		super(okhttp3Client, OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX);
+		this.refreshInterval = DEFAULT_REFRESH_INTERVAL;
 	}
 
 	public OkHttpCacheMetrics(OkHttpClient okhttp3Client, String namePrefix) {
 		super(okhttp3Client, namePrefix);
+		this.refreshInterval = DEFAULT_REFRESH_INTERVAL;
 	}
 
 	public OkHttpCacheMetrics(OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags) {
+		this(okhttp3Client, namePrefix, tags, DEFAULT_REFRESH_INTERVAL);
+	}
+
+	public OkHttpCacheMetrics(OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags, Duration refreshInterval) {
 		super(okhttp3Client, namePrefix, tags);
+		if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+			throw new IllegalArgumentException("refreshInterval <= 0: " + refreshInterval);
+		}
+		this.refreshInterval = refreshInterval;
 	}
 
 	@Override
 	public void bindTo(MeterRegistry registry, OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags) {
 		Cache cache = okhttp3Client.cache();
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_REQUEST_COUNT, "Total number of cache request ", cache, Cache::requestCount, tags);
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_HIT_COUNT, "Total number of cache hit ", cache, Cache::hitCount, tags);
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_NETWORK_COUNT, "Total number of cache network ", cache, Cache::networkCount, tags);
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_WRITE_SUCCESS_COUNT, "Total number of cache write success ", cache, Cache::writeSuccessCount, tags);
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_WRITE_ABORT_COUNT, "Total number of cache write abort ", cache, Cache::writeAbortCount, tags);
-		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_CURRENT_SIZE, "Total number of current cache size ", cache, (c) -> {
+		if (cache == null) {
+			return;
+		}
+		startRefreshing(cache);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_REQUEST_COUNT, "Total number of cache request ", snapshot, s -> s.requestCount, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_HIT_COUNT, "Total number of cache hit ", snapshot, s -> s.hitCount, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_NETWORK_COUNT, "Total number of cache network ", snapshot, s -> s.networkCount, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_WRITE_SUCCESS_COUNT, "Total number of cache write success ", snapshot, s -> s.writeSuccessCount, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_WRITE_ABORT_COUNT, "Total number of cache write abort ", snapshot, s -> s.writeAbortCount, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_CURRENT_SIZE, "Total number of current cache size ", snapshot, s -> s.size, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_MAX_SIZE, "Total number of cache max size ", snapshot, s -> s.maxSize, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_HIT_RATIO, "Ratio of cache requests served by the cache over the last refresh interval ", snapshot, s -> s.hitRatio, tags);
+		bindGauge(registry, namePrefix  + METRIC_NAME_CACHE_NETWORK_RATIO, "Ratio of cache requests sent to the network over the last refresh interval ", snapshot, s -> s.networkRatio, tags);
+	}
+
+	private synchronized void startRefreshing(Cache cache) {
+		if (refresher != null) {
+			return;
+		}
+		refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "okhttp3-cache-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(() -> snapshot.refresh(cache), 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	/**
+	 * The statistics of a {@link Cache} as of the last refresh; the ratios cover the interval
+	 * since the refresh before it, and are {@code NaN} when it saw no request.
+	 */
+	static final class Snapshot {
+
+		volatile double requestCount;
+		volatile double hitCount;
+		volatile double networkCount;
+		volatile double writeSuccessCount;
+		volatile double writeAbortCount;
+		volatile double size;
+		volatile double maxSize;
+		volatile double hitRatio = Double.NaN;
+		volatile double networkRatio = Double.NaN;
+
+		void refresh(Cache cache) {
+			double requests = cache.requestCount();
+			double hits = cache.hitCount();
+			double network = cache.networkCount();
+			double intervalRequests = requests - requestCount;
+			hitRatio = intervalRequests > 0 ? (hits - hitCount) / intervalRequests : Double.NaN;
+			networkRatio = intervalRequests > 0 ? (network - networkCount) / intervalRequests : Double.NaN;
+			requestCount = requests;
+			hitCount = hits;
+			networkCount = network;
+			writeSuccessCount = cache.writeSuccessCount();
+			writeAbortCount = cache.writeAbortCount();
+			maxSize = cache.maxSize();
 			try {
-				return c.size();
-			} catch (IOException e) {
-				return 0;
+				size = cache.size();
+			} catch (IOException | RuntimeException e) {
+				// keep the previous size; the next refresh retries
 			}
-		}, tags);
-		bindGauge(registry, METRIC_NAME_CACHE_MAX_SIZE, "Total number of cache max size ", cache, Cache::maxSize, tags);
+		}
+
 	}
 
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.*;
+import lombok.Data;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttp3 Connection Warmer
+ *
+ * <p>Opens {@link Target#getConnections() connections} to every target when the application has
+ * started, so the first calls after a deploy find DNS resolved and TCP and TLS established. Each
+ * connection is opened by a {@code HEAD} request; the requests of a target hold their response
+ * until all of them have one or failed, which keeps HTTP/1.1 calls from reusing each other's connection.
+ * The connections are then released idle into the {@link okhttp3.ConnectionPool}, which keeps at
+ * most its {@code maxIdleConnections}. The warm-up requests are tagged {@link Unmetered}, which
+ * excludes them from the meters of the client without adding anything to the request sent.
+ *
+ * <p>Startup waits for the warm-up, at most {@code timeout}.
+ */
+public class OkHttpConnectionWarmer extends OkHttp3Metrics {
+
+	/**
+	 * warm-up
+	 */
+	public static final String METRIC_NAME_WARMUP_DURATION 		= ".warmup.duration";
+	public static final String METRIC_NAME_WARMUP_CONNECTIONS 	= ".warmup.connections";
+
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+	private final OkHttpClient okhttp3Client;
+	private final String namePrefix;
+	private final Iterable<Tag> tags;
+	private final List<Target> targets;
+	private final Duration timeout;
+
+	public OkHttpConnectionWarmer(OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags,
+								  List<Target> targets, Duration timeout) {
+		super(okhttp3Client, namePrefix, tags);
+		if (timeout.isNegative() || timeout.isZero()) {
+			throw new IllegalArgumentException("timeout <= 0: " + timeout);
+		}
+		for (Target target : targets) {
+			if (HttpUrl.parse(target.getUrl()) == null) {
+				throw new IllegalArgumentException("Invalid warm-up url: " + target.getUrl());
+			}
+			if (target.getConnections() < 1) {
+				throw new IllegalArgumentException("connections < 1: " + target);
+			}
+		}
+		this.okhttp3Client = okhttp3Client;
+		this.namePrefix = namePrefix;
+		this.tags = tags;
+		this.targets = targets;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationStartedEvent event) {
+		super.onApplicationEvent(event);
+		warmUp(event.getApplicationContext().getBean(MeterRegistry.class));
+	}
+
+	@Override
+	void bindTo(MeterRegistry registry, OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags) {
+		for (Target target : targets) {
+			HttpUrl url = HttpUrl.get(target.getUrl());
+			duration(registry, url);
+			connections(registry, url, "success");
+			connections(registry, url, "failure");
+		}
+	}
+
+	/**
+	 * Opens the connections of every target in parallel and waits for them, at most {@code
+	 * timeout}; connections still opening then are counted as failed and left to finish.
+	 */
+	public void warmUp(MeterRegistry registry) {
+		int total = targets.stream().mapToInt(Target::getConnections).sum();
+		if (total == 0) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(total, runnable -> {
+			Thread thread = new Thread(runnable, "okhttp3-warmup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Callable<Boolean>> tasks = new ArrayList<>(total);
+			List<HttpUrl> urls = new ArrayList<>(total);
+			for (Target target : targets) {
+				HttpUrl url = HttpUrl.get(target.getUrl());
+				CountDownLatch opened = new CountDownLatch(target.getConnections());
+				for (int i = 0; i < target.getConnections(); i++) {
+					tasks.add(() -> open(registry, url, opened));
+					urls.add(url);
+				}
+			}
+			List<Future<Boolean>> results = executor.invokeAll(tasks, timeout.toMillis(), TimeUnit.MILLISECONDS);
+			for (int i = 0; i < results.size(); i++) {
+				connections(registry, urls.get(i), succeeded(results.get(i)) ? "success" : "failure").increment();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private boolean open(MeterRegistry registry, HttpUrl url, CountDownLatch opened) throws Exception {
+		Request request = new Request.Builder()
+				.url(url)
+				.head()
+				.tag(Unmetered.class, Unmetered.INSTANCE)
+				.build();
+		long start = registry.config().clock().monotonicTime();
+		boolean counted = false;
+		try {
+			Response response = okhttp3Client.newCall(request).execute();
+			try {
+				duration(registry, url).record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+				opened.countDown();
+				counted = true;
+				opened.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+				return true;
+			} finally {
+				// held open until the target is warm, so HTTP/1.1 calls do not share a connection
+				response.close();
+			}
+		} finally {
+			// a failed connection must not hold back the others of its target
+			if (!counted) {
+				opened.countDown();
+			}
+		}
+	}
+
+	private static boolean succeeded(Future<Boolean> result) {
+		try {
+			return !result.isCancelled() && result.get();
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private Timer duration(MeterRegistry registry, HttpUrl url) {
+		return Timer.builder(namePrefix + METRIC_NAME_WARMUP_DURATION)
+				.description("Time to open a warm-up connection ")
+				.tags(tags)
+				.tag("target", url.host() + ":" + url.port())
+				.register(registry);
+	}
+
+	private Counter connections(MeterRegistry registry, HttpUrl url, String outcome) {
+		return Counter.builder(namePrefix + METRIC_NAME_WARMUP_CONNECTIONS)
+				.description("Warm-up connections opened at startup ")
+				.tags(tags)
+				.tag("target", url.host() + ":" + url.port())
+				.tag("outcome", outcome)
+				.register(registry);
+	}
+
+	/**
+	 * An upstream to connect to at startup.
+	 */
+	@Data
+	public static class Target {
+
+		/**
+		 * The url requested with HEAD to open each connection, e.g. "https://api.example.com/health".
+		 */
+		private String url;
+
+		/**
+		 * The number of connections to open.
+		 */
+		private int connections = 2;
+
+	}
+
+}
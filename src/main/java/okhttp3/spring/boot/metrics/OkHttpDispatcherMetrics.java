@@ -19,6 +19,9 @@ import io.micrometer.core.instrument.*;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
 /**
  * OkHttp3 Dispatcher Metrics
  */
@@ -31,6 +34,8 @@ public class OkHttpDispatcherMetrics extends OkHttp3Metrics {
 	public static final String METRIC_NAME_DISPATCHER_MAX_REQUESTS_PERHOST 	= ".dispatcher.max.requests.perhost";
 	public static final String METRIC_NAME_DISPATCHER_QUEUED_CALLS_COUNT	= ".dispatcher.queued.calls.count";
 	public static final String METRIC_NAME_DISPATCHER_RUNNING_CALLS_COUNT	= ".dispatcher.running.calls.count";
+	public static final String METRIC_NAME_DISPATCHER_EXECUTOR_ACTIVE 		= ".dispatcher.executor.active";
+	public static final String METRIC_NAME_DISPATCHER_EXECUTOR_THREADS 		= ".dispatcher.executor.threads";
 
 	public OkHttpDispatcherMetrics(OkHttpClient okhttp3Client) {
 		super(okhttp3Client, OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX);
@@ -48,10 +53,31 @@ public class OkHttpDispatcherMetrics extends OkHttp3Metrics {
 	@Override
 	public void bindTo(MeterRegistry registry, OkHttpClient okhttp3Client, String namePrefix, Iterable<Tag> tags) {
 		Dispatcher dispatcher = okhttp3Client.dispatcher();
-		bindCounter(registry, namePrefix + METRIC_NAME_DISPATCHER_MAX_REQUESTS, "max requests of dispatcher ", dispatcher, Dispatcher::getMaxRequests, tags);
-		bindCounter(registry, namePrefix + METRIC_NAME_DISPATCHER_MAX_REQUESTS_PERHOST, "max requests of dispatcher by per host ", dispatcher, Dispatcher::getMaxRequestsPerHost, tags);
+		bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_MAX_REQUESTS, "max requests of dispatcher ", dispatcher, Dispatcher::getMaxRequests, tags);
+		bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_MAX_REQUESTS_PERHOST, "max requests of dispatcher by per host ", dispatcher, Dispatcher::getMaxRequestsPerHost, tags);
 		bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_QUEUED_CALLS_COUNT, "Total number of queued calls ", dispatcher, Dispatcher::queuedCallsCount, tags);
 		bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_RUNNING_CALLS_COUNT, "Total number of running calls ", dispatcher, Dispatcher::runningCallsCount, tags);
+		bindExecutor(registry, dispatcher.executorService(), namePrefix, tags);
+	}
+
+	/**
+	 * The live and busy threads of the executor, when it can tell: a {@link ThreadPoolExecutor}
+	 * (OkHttp's default) or the executor of {@link VirtualThreadDispatchers}, whose live threads
+	 * are its running calls.
+	 */
+	private void bindExecutor(MeterRegistry registry, ExecutorService executor, String namePrefix, Iterable<Tag> tags) {
+		if (executor instanceof InstrumentedDispatcherExecutor) {
+			executor = ((InstrumentedDispatcherExecutor) executor).delegate();
+		}
+		if (executor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+			bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_EXECUTOR_THREADS, "Live threads of the dispatcher executor", pool, ThreadPoolExecutor::getPoolSize, tags);
+			bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_EXECUTOR_ACTIVE, "Threads of the dispatcher executor running a call", pool, ThreadPoolExecutor::getActiveCount, tags);
+		} else if (executor instanceof TaskCountingExecutor) {
+			TaskCountingExecutor tasks = (TaskCountingExecutor) executor;
+			bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_EXECUTOR_THREADS, "Live threads of the dispatcher executor", tasks, TaskCountingExecutor::runningTasks, tags);
+			bindGauge(registry, namePrefix + METRIC_NAME_DISPATCHER_EXECUTOR_ACTIVE, "Threads of the dispatcher executor running a call", tasks, TaskCountingExecutor::runningTasks, tags);
+		}
 	}
 
 }
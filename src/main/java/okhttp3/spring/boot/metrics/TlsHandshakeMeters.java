@@ -0,0 +1,68 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+
+import javax.net.ssl.SSLSocket;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TLS handshakes of a client, by negotiated TLS version, cipher suite and whether the session
+ * was resumed.
+ *
+ * <p>OkHttp's {@link Handshake} does not say whether the session was resumed, so the session of
+ * the connection is inspected when it is first acquired: a session created before the handshake
+ * started was resumed. This holds for JSSE session caching; a provider that re-creates resumed
+ * sessions reports them as new.
+ */
+final class TlsHandshakeMeters {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    TlsHandshakeMeters(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+    }
+
+    /**
+     * Whether the TLS session of {@code connection} predates {@code handshakeStartMillis}, or
+     * {@code null} if the connection is not TLS.
+     */
+    @Nullable
+    static Boolean resumed(Connection connection, long handshakeStartMillis) {
+        Socket socket = connection.socket();
+        if (!(socket instanceof SSLSocket)) {
+            return null;
+        }
+        return ((SSLSocket) socket).getSession().getCreationTime() < handshakeStartMillis;
+    }
+
+    void record(Handshake handshake, long nanos, @Nullable Boolean resumed) {
+        String version = handshake.tlsVersion().javaName();
+        String cipher = handshake.cipherSuite().javaName();
+        String resumption = resumed == null ? UNKNOWN : resumed.toString();
+        String key = version + '|' + cipher + '|' + resumption;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, k -> Timer.builder(OkHttp3Metrics.METRIC_NAME_TLS_HANDSHAKE_DURATION)
+                    .description("Duration of TLS handshakes; its count is the number of handshakes")
+                    .tags(tags)
+                    .tags("tls.version", version, "cipher", cipher, "resumed", resumption)
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,338 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.common.lang.Nullable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The outputs of {@link InstrumentationMode#UNIFIED}: the network request meters of {@link
+ * InstrumentedInterceptor}, the request timer of {@code OkHttpMetricsEventListener} and the
+ * observation of {@code OkHttpObservationInterceptor}, all fed by {@link InstrumentedEventListener}
+ * with the timestamps it has already read.
+ *
+ * <p>Meter names and tags are the same as in {@link InstrumentationMode#LAYERED}, so switching
+ * modes does not break dashboards: the request timer is tagged exactly like the one of {@code
+ * OkHttpMetricsEventListener}, and the context specific tags only go to the observation, as they
+ * only go to {@code OkHttpObservationInterceptor} there.
+ */
+final class UnifiedCallRecorder {
+
+    /** The value of every context specific tag of a call the {@link CallSampler} did not detail. */
+    static final String TAG_VALUE_UNSAMPLED = "UNSAMPLED";
+
+    /**
+     * Maximum number of distinct tag value tuples whose request timer is cached.
+     */
+    static final int DEFAULT_TAG_CACHE_SIZE = 2048;
+
+    /** Status codes as tag values, so recording a status does not format an int. */
+    private static final String[] STATUS = new String[600];
+
+    static {
+        for (int code = 100; code < STATUS.length; code++) {
+            STATUS[code] = Integer.toString(code);
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observationRegistry;
+    private final Function<Request, String> urlMapper;
+    private final Tags extraTags;
+    private final List<BiFunction<Request, Response, KeyValue>> contextSpecificTags;
+    /**
+     * The key each context specific tag returned last, so a call that is not detailed can be tagged
+     * without evaluating it. Racy on purpose: a missing key only costs one evaluation.
+     */
+    private final String[] contextSpecificKeys;
+    private final boolean includeHostTag;
+    private final BoundedMap<TagKey, ResolvedTags> meters = new BoundedMap<>(DEFAULT_TAG_CACHE_SIZE);
+    private final ThreadLocal<TagKey> scratch;
+
+    final Counter submitted;
+    final InFlightRequests running;
+    final Counter completed;
+    final Timer duration;
+
+    UnifiedCallRecorder(MeterRegistry registry,
+                        ObservationRegistry observationRegistry,
+                        Iterable<Tag> extraTags,
+                        List<BiFunction<Request, Response, KeyValue>> contextSpecificTags,
+                        Function<Request, String> urlMapper,
+                        boolean includeHostTag) {
+        this.registry = registry;
+        this.observationRegistry = observationRegistry;
+        this.urlMapper = urlMapper;
+        this.extraTags = Tags.of(extraTags);
+        this.contextSpecificTags = contextSpecificTags;
+        this.contextSpecificKeys = new String[contextSpecificTags.size()];
+        this.scratch = ThreadLocal.withInitial(TagKey::new);
+        this.includeHostTag = includeHostTag;
+
+        String namePrefix = OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX;
+        this.submitted = registry.counter(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_SUBMITTED, extraTags);
+        this.running = new InFlightRequests(registry, namePrefix, extraTags);
+        this.completed = registry.counter(namePrefix + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_COMPLETED, extraTags);
+        this.duration = InstrumentedInterceptor.durationTimer(registry, namePrefix, extraTags);
+    }
+
+    /**
+     * Whether the request opted out of the network request meters with the {@code okhttp3.requests}
+     * header, as honoured by {@link InstrumentedInterceptor}; calls tagged {@link Unmetered} get no
+     * {@link InstrumentedEventListener} at all.
+     */
+    static boolean excluded(Request request) {
+        return request.header(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX) != null;
+    }
+
+    InFlightRequests.Host exchangeStart(Request request) {
+        submitted.increment();
+        return running.start(request.url().host());
+    }
+
+    void exchangeEnd(InFlightRequests.Host host, long nanos) {
+        duration.record(nanos, TimeUnit.NANOSECONDS);
+        running.end(host);
+        completed.increment();
+    }
+
+    /**
+     * Starts the observation of a call, or returns {@code null} when observations are disabled.
+     */
+    @Nullable
+    Observation startObservation(Request request) {
+        if (observationRegistry.isNoop()) {
+            return null;
+        }
+        return Observation.createNotStarted(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, observationRegistry)
+                .contextualName(request.method())
+                .start();
+    }
+
+    /**
+     * Records a finished call: resolves its tags once and writes them to the request timer and, if
+     * any, the observation, together with the context specific tags.
+     *
+     * <p>The tag values are probed in a per-thread {@link TagKey} against a cache of the resolved
+     * timers, so a call whose tag values were seen before neither builds {@link Tags} nor looks up
+     * the registry.
+     *
+     * <p>The request timer of a detailed call is recorded in the scope of its observation, so a
+     * tracing handler makes the span of the call current and an exemplar sampler of the registry can
+     * attach its trace and span ids to the histogram bucket.
+     *
+     * @param detailed whether to evaluate the context specific tags and open the observation scope;
+     *     otherwise each context specific tag of the observation is {@value #TAG_VALUE_UNSAMPLED}
+     */
+    void callEnd(Request request, @Nullable Response response, @Nullable IOException ioe, long nanos,
+                 @Nullable Observation observation, boolean detailed) {
+        TagKey key = scratch.get();
+        key.set(request, uri(request, response), status(response, ioe));
+        ResolvedTags resolved = meters.getIfPresent(key);
+        if (resolved == null) {
+            Tags tags = tags(key);
+            resolved = new ResolvedTags(tags, registry.timer(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX, tags));
+            meters.put(key.copy(), resolved);
+        }
+        if (observation != null && detailed) {
+            Observation.Scope scope = observation.openScope();
+            try {
+                resolved.timer.record(nanos, TimeUnit.NANOSECONDS);
+            } finally {
+                scope.close();
+            }
+        } else {
+            resolved.timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+        if (observation != null) {
+            KeyValues keyValues = KeyValues.empty();
+            for (Tag tag : resolved.tags) {
+                keyValues = keyValues.and(tag.getKey(), tag.getValue());
+            }
+            for (int i = 0; i < contextSpecificKeys.length; i++) {
+                keyValues = keyValues.and(contextSpecificTag(i, request, response, detailed));
+            }
+            observation.lowCardinalityKeyValues(keyValues);
+            if (ioe != null) {
+                observation.error(ioe);
+            }
+            observation.stop();
+        }
+    }
+
+    /**
+     * The context specific tag {@code i} of a call; only evaluated for a detailed call, or to learn
+     * its key.
+     */
+    private KeyValue contextSpecificTag(int i, Request request, @Nullable Response response, boolean detailed) {
+        String tagKey = contextSpecificKeys[i];
+        if (detailed || tagKey == null) {
+            KeyValue keyValue = contextSpecificTags.get(i).apply(request, response);
+            contextSpecificKeys[i] = keyValue.getKey();
+            if (detailed) {
+                return keyValue;
+            }
+            tagKey = keyValue.getKey();
+        }
+        return KeyValue.of(tagKey, TAG_VALUE_UNSAMPLED);
+    }
+
+    private Tags tags(TagKey key) {
+        Tags tags = Tags.of(
+                "method", key.method,
+                "uri", key.uri,
+                "status", key.status,
+                "target.scheme", key.scheme,
+                "target.host", key.host,
+                "target.port", Integer.toString(key.port))
+                .and(extraTags);
+        if (key.requestTags != null) {
+            tags = tags.and(key.requestTags);
+        }
+        if (includeHostTag) {
+            tags = tags.and("host", key.host);
+        }
+        return tags;
+    }
+
+    /**
+     * As {@code OkHttpMetricsEventListener}, which also reports a 301 as {@code NOT_FOUND}.
+     */
+    private String uri(Request request, @Nullable Response response) {
+        if (response != null && (response.code() == 404 || response.code() == 301)) {
+            return "NOT_FOUND";
+        }
+        return urlMapper.apply(request);
+    }
+
+    private static String status(@Nullable Response response, @Nullable IOException ioe) {
+        if (ioe != null) {
+            return "IO_ERROR";
+        }
+        if (response == null) {
+            return "CLIENT_ERROR";
+        }
+        int code = response.code();
+        return code >= 100 && code < STATUS.length ? STATUS[code] : Integer.toString(code);
+    }
+
+    /**
+     * The tags of a finished call and the request timer they resolve to.
+     */
+    private static final class ResolvedTags {
+
+        final Tags tags;
+        final Timer timer;
+
+        ResolvedTags(Tags tags, Timer timer) {
+            this.tags = tags;
+            this.timer = timer;
+        }
+
+    }
+
+    /**
+     * The tag values of a finished call. A per-thread instance is refilled for every call and used
+     * as the probe; only a cache miss copies it.
+     */
+    static final class TagKey {
+
+        String method;
+        String uri;
+        String status;
+        String scheme;
+        String host;
+        int port;
+        @Nullable
+        Tags requestTags;
+        private int hash;
+
+        void set(Request request, String uri, String status) {
+            HttpUrl url = request.url();
+            this.method = request.method();
+            this.uri = uri;
+            this.status = status;
+            this.scheme = url.scheme();
+            this.host = url.host();
+            this.port = url.port();
+            this.requestTags = requestTags(request);
+            int h = method.hashCode();
+            h = 31 * h + uri.hashCode();
+            h = 31 * h + status.hashCode();
+            h = 31 * h + scheme.hashCode();
+            h = 31 * h + host.hashCode();
+            h = 31 * h + port;
+            h = 31 * h + (requestTags == null ? 0 : requestTags.hashCode());
+            this.hash = h;
+        }
+
+        TagKey copy() {
+            TagKey copy = new TagKey();
+            copy.method = method;
+            copy.uri = uri;
+            copy.status = status;
+            copy.scheme = scheme;
+            copy.host = host;
+            copy.port = port;
+            copy.requestTags = requestTags;
+            copy.hash = hash;
+            return copy;
+        }
+
+        /**
+         * As {@code OkHttpMetricsEventListener}: the {@link Tags} tag of the request, or its untyped
+         * tag if that is a {@link Tags}.
+         */
+        @Nullable
+        private static Tags requestTags(Request request) {
+            Tags tags = request.tag(Tags.class);
+            if (tags != null) {
+                return tags;
+            }
+            Object tag = request.tag();
+            return tag instanceof Tags ? (Tags) tag : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TagKey)) {
+                return false;
+            }
+            TagKey other = (TagKey) o;
+            return hash == other.hash
+                    && port == other.port
+                    && method.equals(other.method)
+                    && uri.equals(other.uri)
+                    && status.equals(other.status)
+                    && scheme.equals(other.scheme)
+                    && host.equals(other.host)
+                    && Objects.equals(requestTags, other.requestTags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
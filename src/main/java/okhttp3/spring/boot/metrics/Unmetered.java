@@ -0,0 +1,30 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.Request;
+
+/**
+ * A request tag that keeps a call out of every meter and observation of this library, e.g. the
+ * warm-up requests of {@link OkHttpConnectionWarmer}:
+ *
+ * <pre class="code">
+ * new Request.Builder().url(url).tag(Unmetered.class, Unmetered.INSTANCE).build();
+ * </pre>
+ *
+ * <p>Unlike the {@code okhttp3.requests} header, which only {@link InstrumentedInterceptor} honours,
+ * the tag is never sent upstream. Event listeners installed by the application still see the call.
+ */
+public final class Unmetered {
+
+    public static final Unmetered INSTANCE = new Unmetered();
+
+    private Unmetered() {
+    }
+
+    /**
+     * Whether {@code request} carries the tag.
+     */
+    public static boolean isUnmetered(Request request) {
+        return request.tag(Unmetered.class) != null;
+    }
+
+}
@@ -0,0 +1,186 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Maps a request to the template of its path, for the {@code uri} tag.
+ *
+ * <p>The path is matched segment by segment against a trie of the configured templates, e.g.
+ * {@code /users/{id}/orders/{id}}; literal segments win over variables. A path matching no template
+ * keeps its literal segments, with numeric, UUID and hexadecimal segments collapsed to {@code
+ * {id}}, {@code {uuid}} and {@code {hex}}. Results are memoized per path in a {@link BoundedCache}.
+ */
+public class UriTemplateMapper implements Function<Request, String> {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final Node root = new Node();
+    private final BoundedCache<String, String> cache;
+
+    public UriTemplateMapper(List<String> templates) {
+        this(templates, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param templates paths where a segment in braces, e.g. {@code {id}}, matches any segment
+     * @param cacheSize the maximum number of memoized paths, {@code 0} to disable memoization
+     */
+    public UriTemplateMapper(List<String> templates, int cacheSize) {
+        if (templates != null) {
+            for (String template : templates) {
+                add(template);
+            }
+        }
+        this.cache = new BoundedCache<>(cacheSize, this::map);
+    }
+
+    @Override
+    public String apply(Request request) {
+        return cache.get(request.url().encodedPath());
+    }
+
+    private void add(String template) {
+        Node node = root;
+        for (String segment : segments(template)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (node.template == null) {
+            node.template = template;
+        }
+    }
+
+    String map(String encodedPath) {
+        List<String> segments = segments(encodedPath);
+        String template = match(root, segments, 0);
+        return template != null ? template : collapse(segments);
+    }
+
+    private static String match(Node node, List<String> segments, int index) {
+        if (index == segments.size()) {
+            return node.template;
+        }
+        Node literal = node.literals.get(segments.get(index));
+        if (literal != null) {
+            String template = match(literal, segments, index + 1);
+            if (template != null) {
+                return template;
+            }
+        }
+        return node.variable == null ? null : match(node.variable, segments, index + 1);
+    }
+
+    private static String collapse(List<String> segments) {
+        if (segments.isEmpty()) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            path.append('/').append(collapse(segment));
+        }
+        return path.toString();
+    }
+
+    static String collapse(String segment) {
+        if (segment.isEmpty()) {
+            return segment;
+        }
+        if (isNumeric(segment)) {
+            return "{id}";
+        }
+        if (isUuid(segment)) {
+            return "{uuid}";
+        }
+        if (isHex(segment)) {
+            return "{hex}";
+        }
+        return segment;
+    }
+
+    private static boolean isNumeric(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUuid(String segment) {
+        if (segment.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = segment.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * At least 8 hexadecimal characters with at least one digit, so words such as {@code
+     * deadbeef} or {@code facade} stay literal.
+     */
+    private static boolean isHex(String segment) {
+        if (segment.length() < 8) {
+            return false;
+        }
+        boolean digit = false;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+            digit |= c <= '9';
+        }
+        return digit;
+    }
+
+    /**
+     * The segments of a path; a trailing slash is kept as an empty last segment, as in {@link
+     * HttpUrl#encodedPathSegments()}.
+     */
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = path.startsWith("/") ? 1 : 0;
+        if (start == path.length()) {
+            return segments;
+        }
+        for (int i = start; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                segments.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node variable;
+        private String template;
+
+    }
+
+}
@@ -2,6 +2,7 @@ package okhttp3.spring.boot.metrics;
 
 import okhttp3.Request;
 
+import java.util.Collections;
 import java.util.function.Function;
 
 /**
@@ -16,6 +17,11 @@ public enum UrlMapperEnum {
     ENCODED_PATH( "Encoded Path ", (request)-> request.url().encodedPath()),
     FULL_URL( "Full URL", (request) -> request.url().toString()),
     TOP_PRIVATE_DOMAIN( "Top Private Domain", (request) -> request.url().topPrivateDomain()),
+    /**
+     * The encoded path with numeric, UUID and hexadecimal segments collapsed, see {@link
+     * UriTemplateMapper}; configure templates with a {@link UriTemplateMapper} of your own.
+     */
+    URI_TEMPLATE( "URI Template", new UriTemplateMapper(Collections.emptyList())),
     ;
 
     private String name;
@@ -0,0 +1,67 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.Dispatcher;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link Dispatcher}s that run every asynchronous call on its own virtual thread (Java 21+).
+ *
+ * <p>A blocked virtual thread does not hold a platform thread, so the limits can be far higher
+ * than with OkHttp's default cached pool; they still bound the load put on the upstreams. The
+ * executor counts the calls running on it, which {@link OkHttpDispatcherMetrics} publishes as its
+ * active tasks and live threads.
+ */
+public final class VirtualThreadDispatchers {
+
+    public static final int DEFAULT_MAX_REQUESTS = 1024;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 256;
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the running JVM has virtual threads.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    public static Dispatcher create() {
+        return create(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @throws IllegalStateException if the running JVM has no virtual threads
+     */
+    public static Dispatcher create(int maxRequests, int maxRequestsPerHost) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+        Dispatcher dispatcher = new Dispatcher(new TaskCountingExecutor(executor));
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    private VirtualThreadDispatchers() {
+        // No instances.
+    }
+
+}
@@ -0,0 +1,182 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Calls answered by a terminal interceptor, with latencies on a {@link MockClock}.
+ */
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final String HOST = "api.example.com";
+
+    private final MockClock clock = new MockClock();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final Request request = new Request.Builder().url("https://" + HOST + "/users/8812").build();
+
+    @Test
+    void growsByOneWhileHalfTheLimitIsInUse() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(2, 1, 3));
+        OkHttpClient client = client(limiter, chain -> respond(chain, 200));
+
+        call(client);
+        assertThat(limiter.limit(HOST)).isEqualTo(3);
+        call(client);
+        assertThat(limiter.limit(HOST)).isEqualTo(3);
+        assertThat(registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + AdaptiveConcurrencyLimiter.METRIC_NAME_LIMITER_LIMIT)
+                .tag("host", HOST).gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotGrowWhileMostOfTheLimitIsIdle() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(4, 1, 10));
+
+        call(client(limiter, chain -> respond(chain, 200)));
+
+        assertThat(limiter.limit(HOST)).isEqualTo(4);
+    }
+
+    @Test
+    void backsOffOnOverloadResponses() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(10, 1, 20));
+
+        call(client(limiter, chain -> respond(chain, 429)));
+        assertThat(limiter.limit(HOST)).isEqualTo(9);
+        call(client(limiter, chain -> respond(chain, 503)));
+        assertThat(limiter.limit(HOST)).isEqualTo(8);
+    }
+
+    @Test
+    void backsOffOnErrors() {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(10, 1, 20));
+        OkHttpClient client = client(limiter, chain -> {
+            throw new IOException("connection reset");
+        });
+
+        assertThrows(IOException.class, () -> call(client));
+
+        assertThat(limiter.limit(HOST)).isEqualTo(9);
+    }
+
+    @Test
+    void backsOffOnSlowResponses() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(10, 1, 20));
+
+        call(client(limiter, chain -> {
+            clock.add(Duration.ofSeconds(6));
+            return respond(chain, 200);
+        }));
+
+        assertThat(limiter.limit(HOST)).isEqualTo(9);
+    }
+
+    @Test
+    void staysWithinItsBounds() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(2, 2, 2));
+
+        call(client(limiter, chain -> respond(chain, 503)));
+        assertThat(limiter.limit(HOST)).isEqualTo(2);
+        call(client(limiter, chain -> respond(chain, 200)));
+        assertThat(limiter.limit(HOST)).isEqualTo(2);
+    }
+
+    @Test
+    void leavesTheLimitOfCanceledCalls() {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(10, 1, 20));
+        OkHttpClient client = client(limiter, chain -> {
+            chain.call().cancel();
+            throw new IOException("Canceled");
+        });
+
+        assertThrows(IOException.class, () -> call(client));
+
+        assertThat(limiter.limit(HOST)).isEqualTo(10);
+    }
+
+    @Test
+    void backsOffOnCallTimeouts() {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(10, 1, 20));
+        OkHttpClient client = client(limiter, chain -> {
+            clock.add(Duration.ofSeconds(2));
+            chain.call().cancel();
+            throw new IOException("Canceled");
+        }).newBuilder().callTimeout(Duration.ofSeconds(2)).build();
+
+        assertThrows(IOException.class, () -> call(client));
+
+        assertThat(limiter.limit(HOST)).isEqualTo(9);
+    }
+
+    @Test
+    void rejectsCallsOverTheLimit() throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiter(settings(1, 1, 1));
+        OkHttpClient[] client = new OkHttpClient[1];
+        client[0] = client(limiter, chain -> {
+            if (chain.request().header("nested") == null) {
+                assertThrows(AdaptiveConcurrencyLimiter.LimitExceededException.class,
+                        () -> client[0].newCall(request.newBuilder().header("nested", "true").build()).execute());
+            }
+            return respond(chain, 200);
+        });
+
+        call(client[0]);
+
+        assertThat(registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + AdaptiveConcurrencyLimiter.METRIC_NAME_LIMITER_REJECTED)
+                .tag("host", HOST).counter().count()).isEqualTo(1);
+        call(client[0]);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(AdaptiveConcurrencyLimiter.Settings settings) {
+        return new AdaptiveConcurrencyLimiter(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX, Tags.empty(), settings, clock);
+    }
+
+    private static AdaptiveConcurrencyLimiter.Settings settings(int initialLimit, int minLimit, int maxLimit) {
+        AdaptiveConcurrencyLimiter.Settings settings = new AdaptiveConcurrencyLimiter.Settings();
+        settings.setInitialLimit(initialLimit);
+        settings.setMinLimit(minLimit);
+        settings.setMaxLimit(maxLimit);
+        return settings;
+    }
+
+    private static OkHttpClient client(AdaptiveConcurrencyLimiter limiter, Interceptor upstream) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(limiter)
+                .addInterceptor(upstream)
+                .build();
+    }
+
+    private void call(OkHttpClient client) throws IOException {
+        client.newCall(request).execute().close();
+    }
+
+    private static Response respond(Interceptor.Chain chain, int code) {
+        return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .body(ResponseBody.create(MediaType.get("text/plain"), ""))
+                .build();
+    }
+
+}
@@ -0,0 +1,54 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The {@link CallSampler} applied by {@link InstrumentedEventListener}, driven by a {@link MockClock}.
+ */
+class CallSamplerTests {
+
+    private final MockClock clock = new MockClock();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final Request request = new Request.Builder().url("http://sidecar.local/users/8812").build();
+
+    @Test
+    void recordsPhasesOfUnsampledCallsOnlyWhenSlow() {
+        CallSampler.Settings sampling = new CallSampler.Settings();
+        sampling.setRate(0);
+        sampling.setSlowThreshold(Duration.ofMillis(1));
+        Call call = new OkHttpClient().newCall(request);
+        InstrumentedEventListenerFactory factory = new InstrumentedEventListenerFactory(registry,
+                Collections.emptyList(), clock, new CallSampler(sampling), null);
+
+        for (long micros : new long[] {400, 1500}) {
+            EventListener listener = factory.create(call);
+            listener.callStart(call);
+            listener.requestHeadersStart(call);
+            clock.add(micros, TimeUnit.MICROSECONDS);
+            listener.requestHeadersEnd(call, request);
+            listener.callEnd(call);
+        }
+
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION).timer().count()).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_REQUESTS_HEADERS_END).counter().count()).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_REQUESTS_WRITE_DURATION).timer()
+                .totalTime(TimeUnit.MICROSECONDS)).isEqualTo(1500);
+    }
+
+}
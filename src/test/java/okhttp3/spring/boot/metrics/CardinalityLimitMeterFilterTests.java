@@ -0,0 +1,49 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardinalityLimitMeterFilterTests {
+
+    @Test
+    void foldsValuesPastTheCapIntoOther() {
+        CardinalityLimitMeterFilter filter = new CardinalityLimitMeterFilter(2);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(filter);
+        filter.bindTo(registry);
+
+        for (int id = 0; id < 5; id++) {
+            registry.counter("okhttp3.requests.test", "uri", "/users/" + id, "method", "GET").increment();
+        }
+        registry.counter("other.requests", "uri", "/users/9").increment();
+
+        assertThat(registry.find("okhttp3.requests.test").counters()).hasSize(3);
+        assertThat(registry.get("okhttp3.requests.test").tag("uri", CardinalityLimitMeterFilter.OTHER)
+                .counter().count()).isEqualTo(3);
+        assertThat(registry.get("okhttp3.requests.test").tag("uri", "/users/1").counter().count()).isEqualTo(1);
+        assertThat(registry.get("other.requests").counter().count()).isEqualTo(1);
+        assertThat(registry.get(CardinalityLimitMeterFilter.METRIC_NAME_METERS_FOLDED).functionCounter().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void countsAFoldedValueOnce() {
+        CardinalityLimitMeterFilter filter = new CardinalityLimitMeterFilter(1);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(filter);
+        filter.bindTo(registry);
+
+        registry.counter("okhttp3.requests.test", "uri", "/users/1").increment();
+        registry.counter("okhttp3.requests.test", "uri", "/users/2").increment();
+        registry.counter("okhttp3.requests.test", "uri", "/users/2").increment();
+
+        assertThat(registry.get("okhttp3.requests.test").tag("uri", CardinalityLimitMeterFilter.OTHER)
+                .counter().count()).isEqualTo(2);
+        assertThat(registry.get(CardinalityLimitMeterFilter.METRIC_NAME_METERS_FOLDED).functionCounter().count())
+                .isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,161 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Address;
+import okhttp3.Authenticator;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Route;
+import org.junit.jupiter.api.Test;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Connections driven by hand: OkHttp reports acquisitions and releases, the tracker sweeps closed
+ * sockets on the {@link MockClock}.
+ */
+class ConnectionTrackerTests {
+
+    private static final String ROUTE = "api.example.com:443";
+
+    private final MockClock clock = new MockClock();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final ConnectionTracker tracker = new ConnectionTracker(registry, Tags.empty(), clock);
+
+    @Test
+    void countsTheStreamsOfHttp2Connections() throws IOException {
+        FakeConnection h2 = new FakeConnection(Protocol.HTTP_2);
+        FakeConnection http1 = new FakeConnection(Protocol.HTTP_1_1);
+
+        tracker.acquired(h2, true);
+        tracker.acquired(h2, false);
+        tracker.acquired(h2, false);
+        tracker.acquired(http1, true);
+        assertThat(h2Streams()).isEqualTo(3);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_ACTIVE).gauge().value()).isEqualTo(2);
+
+        tracker.released(h2);
+        tracker.released(http1);
+        assertThat(h2Streams()).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_IDLE).gauge().value()).isEqualTo(1);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ACQUISITIONS)
+                .tags("protocol", "h2", "reused", "true").counter().count()).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ACQUISITIONS)
+                .tags("protocol", "http/1.1", "reused", "false").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void retiresClosedHttp2Connections() throws IOException {
+        FakeConnection first = new FakeConnection(Protocol.HTTP_2);
+        FakeConnection second = new FakeConnection(Protocol.HTTP_2);
+        tracker.acquired(first, true);
+        tracker.acquired(first, false);
+        tracker.acquired(second, true);
+        tracker.released(first);
+        assertThat(h2Streams()).isEqualTo(1);
+
+        first.socket.close();
+        clock.add(ConnectionTracker.SWEEP_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        tracker.maybeSweep();
+
+        assertThat(h2Streams()).isEqualTo(1);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_REQUESTS).tag("protocol", "h2")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_LIFETIME).tag("protocol", "h2")
+                .timer().count()).isEqualTo(1);
+
+        tracker.released(second);
+        second.socket.close();
+        clock.add(ConnectionTracker.SWEEP_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        tracker.maybeSweep();
+        assertThat(Double.isNaN(h2Streams())).isTrue();
+    }
+
+    @Test
+    void tagsTheCallTimerWithTheProtocolOfTheConnection() throws IOException {
+        Request request = new Request.Builder().url("https://api.example.com/users/8812").build();
+        Call call = new OkHttpClient().newCall(request);
+        InstrumentedEventListenerFactory factory = new InstrumentedEventListenerFactory(registry, clock, null);
+
+        EventListener multiplexed = factory.create(call);
+        multiplexed.callStart(call);
+        multiplexed.connectionAcquired(call, new FakeConnection(Protocol.HTTP_2));
+        clock.add(2, TimeUnit.MILLISECONDS);
+        multiplexed.callEnd(call);
+        EventListener cached = factory.create(call);
+        cached.callStart(call);
+        cached.callEnd(call);
+
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION).tag("protocol", "h2").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION).tag("protocol", "none").timer()
+                .count()).isEqualTo(1);
+    }
+
+    private double h2Streams() {
+        return registry.get(OkHttp3Metrics.METRIC_NAME_CONNECTIONS_ROUTE_H2_STREAMS).tag("route", ROUTE).gauge().value();
+    }
+
+    /**
+     * A pooled connection to {@value #ROUTE}; closing its socket is its close.
+     */
+    private static final class FakeConnection implements Connection {
+
+        private final Protocol protocol;
+        private final Socket socket = new Socket();
+        private final Route route;
+
+        FakeConnection(Protocol protocol) {
+            this.protocol = protocol;
+            Address address = new Address("api.example.com", 443, Dns.SYSTEM, SocketFactory.getDefault(), null, null,
+                    null, Authenticator.NONE, null, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1),
+                    Collections.singletonList(ConnectionSpec.MODERN_TLS), ProxySelector.getDefault());
+            this.route = new Route(address, Proxy.NO_PROXY, InetSocketAddress.createUnresolved("api.example.com", 443));
+        }
+
+        @Override
+        public Route route() {
+            return route;
+        }
+
+        @Override
+        public Socket socket() {
+            return socket;
+        }
+
+        @Override
+        public Handshake handshake() {
+            return null;
+        }
+
+        @Override
+        public Protocol protocol() {
+            return protocol;
+        }
+
+    }
+
+}
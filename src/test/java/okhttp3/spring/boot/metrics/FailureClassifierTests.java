@@ -0,0 +1,60 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.internal.http2.ErrorCode;
+import okhttp3.internal.http2.StreamResetException;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import static okhttp3.spring.boot.metrics.FailureClassifier.Phase.CALL;
+import static okhttp3.spring.boot.metrics.FailureClassifier.Phase.CONNECT;
+import static okhttp3.spring.boot.metrics.FailureClassifier.Phase.REQUEST;
+import static okhttp3.spring.boot.metrics.FailureClassifier.Phase.RESPONSE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FailureClassifierTests {
+
+    @Test
+    void classifiesByExceptionClass() {
+        assertThat(classify(new UnknownHostException("api.example.com"), CALL)).isEqualTo(FailureCause.DNS);
+        assertThat(classify(new ConnectException("Failed to connect to api.example.com/10.0.0.1:443"), CONNECT))
+                .isEqualTo(FailureCause.CONNECTION_REFUSED);
+        assertThat(classify(new SSLHandshakeException("PKIX path building failed"), CONNECT)).isEqualTo(FailureCause.TLS);
+        assertThat(classify(new StreamResetException(ErrorCode.REFUSED_STREAM), RESPONSE))
+                .isEqualTo(FailureCause.CONNECTION_RESET);
+        assertThat(classify(new InterruptedIOException("timeout"), CALL)).isEqualTo(FailureCause.CALL_TIMEOUT);
+        assertThat(classify(new IOException("boom"), CALL)).isEqualTo(FailureCause.OTHER);
+    }
+
+    @Test
+    void classifiesSocketTimeoutsByPhase() {
+        assertThat(classify(new SocketTimeoutException("connect timed out"), CONNECT)).isEqualTo(FailureCause.CONNECT_TIMEOUT);
+        assertThat(classify(new SocketTimeoutException("timeout"), REQUEST)).isEqualTo(FailureCause.WRITE_TIMEOUT);
+        assertThat(classify(new SocketTimeoutException("timeout"), RESPONSE)).isEqualTo(FailureCause.READ_TIMEOUT);
+        assertThat(classify(new SocketException("Connection reset"), RESPONSE)).isEqualTo(FailureCause.CONNECTION_RESET);
+        assertThat(classify(new IOException("unexpected end of stream on http://api.example.com/..."), RESPONSE))
+                .isEqualTo(FailureCause.CONNECTION_RESET);
+        assertThat(FailureClassifier.classify(new SocketException("Socket closed"), true, RESPONSE))
+                .isEqualTo(FailureCause.CANCELED);
+    }
+
+    @Test
+    void classifiesCallTimeoutsOfCanceledCalls() {
+        // OkHttp cancels a call when its timeout fires, so the timeout arrives with canceled = true
+        InterruptedIOException timeout = new InterruptedIOException("timeout");
+        timeout.initCause(new SocketException("Socket closed"));
+        assertThat(FailureClassifier.classify(timeout, true, RESPONSE)).isEqualTo(FailureCause.CALL_TIMEOUT);
+        assertThat(FailureClassifier.classify(new IOException("Canceled"), true, CALL)).isEqualTo(FailureCause.CANCELED);
+    }
+
+    private static FailureCause classify(IOException e, FailureClassifier.Phase phase) {
+        return FailureClassifier.classify(e, false, phase);
+    }
+
+}
@@ -0,0 +1,68 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistogramStrategyTests {
+
+    private static final String NETWORK_REQUESTS_DURATION = OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX
+            + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_DURATION;
+
+    /** The distribution {@link InstrumentedInterceptor#durationTimer} sets on its builder. */
+    private static final DistributionStatisticConfig NETWORK_BUILDER = DistributionStatisticConfig.builder()
+            .percentilesHistogram(true)
+            .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+            .maximumExpectedValue((double) Duration.ofSeconds(10).toNanos())
+            .build();
+
+    @Test
+    void defaultsLeaveEveryTimerAsBuilt() {
+        HistogramStrategy strategy = new HistogramStrategy(HistogramStrategy.Settings.defaults());
+
+        DistributionStatisticConfig network = strategy.configure(timer(NETWORK_REQUESTS_DURATION), NETWORK_BUILDER);
+        DistributionStatisticConfig call = strategy.configure(timer(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION),
+                DistributionStatisticConfig.NONE);
+
+        assertThat(network).isSameAs(NETWORK_BUILDER);
+        assertThat(call).isSameAs(DistributionStatisticConfig.NONE);
+    }
+
+    @Test
+    void modesKeepTheFieldsTheyDoNotUse() {
+        HistogramStrategy.Settings settings = HistogramStrategy.Settings.defaults();
+        settings.setMode(HistogramMode.PERCENTILES);
+        HistogramStrategy strategy = new HistogramStrategy(settings);
+        DistributionStatisticConfig built = DistributionStatisticConfig.builder()
+                .serviceLevelObjectives((double) Duration.ofMillis(250).toNanos())
+                .build();
+
+        DistributionStatisticConfig config = strategy.configure(timer(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION), built);
+
+        assertThat(config.getPercentiles().length).isEqualTo(3);
+        assertThat(config.getServiceLevelObjectiveBoundaries().length).isEqualTo(1);
+    }
+
+    @Test
+    void noneTurnsTheDistributionOff() {
+        HistogramStrategy.Settings none = new HistogramStrategy.Settings();
+        none.setMode(HistogramMode.NONE);
+        HistogramStrategy strategy = new HistogramStrategy(HistogramStrategy.Settings.defaults(),
+                Collections.singletonMap(NETWORK_REQUESTS_DURATION, none), Collections.emptyMap());
+
+        DistributionStatisticConfig config = strategy.configure(timer(NETWORK_REQUESTS_DURATION), NETWORK_BUILDER);
+
+        assertThat(config.isPercentileHistogram()).isFalse();
+    }
+
+    private static Meter.Id timer(String name) {
+        return new Meter.Id(name, Tags.empty(), null, null, Meter.Type.TIMER);
+    }
+
+}
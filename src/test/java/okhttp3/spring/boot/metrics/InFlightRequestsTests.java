@@ -0,0 +1,73 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InFlightRequestsTests {
+
+    private static final String RUNNING = OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX
+            + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_RUNNING;
+    private static final String HOST_RUNNING = OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX
+            + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_HOST_RUNNING;
+
+    private final MockClock clock = new MockClock();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    @Test
+    void instancesWithTheSameTagsShareTheirGauges() {
+        InFlightRequests first = inFlightRequests();
+        InFlightRequests second = inFlightRequests();
+
+        first.start("users.internal");
+        second.start("users.internal");
+        second.start("orders.internal");
+
+        assertThat(registry.get(RUNNING).gauge().value()).isEqualTo(3.0);
+        assertThat(registry.get(HOST_RUNNING).tag("host", "users.internal").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void hostsFoldedByAFilterShareTheirGauge() {
+        registry.config().meterFilter(MeterFilter.replaceTagValues("host", host -> "OTHER"));
+        InFlightRequests requests = inFlightRequests();
+
+        requests.start("users.internal");
+        requests.start("orders.internal");
+
+        assertThat(registry.get(HOST_RUNNING).tag("host", "OTHER").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void dropsIdleHosts() {
+        InFlightRequests requests = inFlightRequests();
+        requests.end(requests.start("users.internal"));
+
+        clock.add(Duration.ofMinutes(1));
+        requests.start("orders.internal");
+        clock.add(Duration.ofMinutes(1));
+        requests.start("billing.internal");
+
+        assertThat(registry.find(HOST_RUNNING).gauges().stream()
+                .map(gauge -> gauge.getId().getTag("host"))
+                .sorted()
+                .collect(Collectors.toList())).containsExactly("billing.internal", "orders.internal");
+    }
+
+    private InFlightRequests inFlightRequests() {
+        return new InFlightRequests(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+                Collections.singletonList(Tag.of("client", "default")));
+    }
+
+}
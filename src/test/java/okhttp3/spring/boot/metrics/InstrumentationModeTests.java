@@ -0,0 +1,108 @@
+package okhttp3.spring.boot.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Both {@link InstrumentationMode modes} against a local server: switching modes must not change
+ * the series of the request timer, and neither records calls tagged {@link Unmetered}.
+ */
+class InstrumentationModeTests {
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int code = path.equals("/missing") ? 404 : path.equals("/moved") ? 301 : 200;
+            if (code == 301) {
+                exchange.getResponseHeaders().add("Location", "/users/8812");
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void modesRecordTheSameRequestTimers() throws IOException {
+        assertThat(requestTimers(InstrumentationMode.UNIFIED)).isEqualTo(requestTimers(InstrumentationMode.LAYERED));
+    }
+
+    @Test
+    void unmeteredCallsRecordNothing() throws IOException {
+        for (InstrumentationMode mode : InstrumentationMode.values()) {
+            MeterRegistry registry = new SimpleMeterRegistry();
+            OkHttpClient client = InstrumentedOkHttpClients.builder(registry, new OkHttpClient()).mode(mode).build();
+            String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/health";
+            client.newCall(new Request.Builder().url(url).head().tag(Unmetered.class, Unmetered.INSTANCE).build())
+                    .execute().close();
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+            List<Double> counts = registry.getMeters().stream()
+                    .flatMap(meter -> StreamSupport.stream(meter.measure().spliterator(), false))
+                    .filter(measurement -> measurement.getStatistic() == Statistic.COUNT)
+                    .map(Measurement::getValue)
+                    .filter(count -> count != 0)
+                    .collect(Collectors.toList());
+            assertThat(counts).isEmpty();
+        }
+    }
+
+    private Set<Meter.Id> requestTimers(InstrumentationMode mode) throws IOException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        OkHttpClient client = InstrumentedOkHttpClients.builder(registry, new OkHttpClient.Builder()
+                        .followRedirects(false)
+                        .build())
+                .mode(mode)
+                .extraTags(Collections.singletonMap("application", "orders"))
+                .requestTagKeys(Collections.singletonList("tenant"))
+                .contextSpecificTags(Collections.singletonList((request, response) -> KeyValue.of("region", "eu")))
+                .includeHostTag(true)
+                .build();
+        String base = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        for (String path : new String[] {"/users/8812", "/missing", "/moved"}) {
+            client.newCall(new Request.Builder().url(base + path).build()).execute().close();
+        }
+        client.newCall(new Request.Builder().url(base + "/users/8812").tag(Tags.class, Tags.of("tenant", "acme")).build())
+                .execute().close();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        Set<Meter.Id> ids = registry.find(OkHttp3Metrics.OKHTTP3_REQUEST_METRIC_NAME_PREFIX).timers().stream()
+                .map(Timer::getId)
+                .collect(Collectors.toSet());
+        assertThat(ids).hasSize(4);
+        return ids;
+    }
+
+}
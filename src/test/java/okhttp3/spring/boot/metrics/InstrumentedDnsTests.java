@@ -0,0 +1,104 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Dns;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class InstrumentedDnsTests {
+
+    private final MockClock clock = new MockClock();
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+    private final StubDns resolver = new StubDns();
+    private final InstrumentedDns dns = new InstrumentedDns(registry, resolver, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+            Collections.emptyList(), new InstrumentedDns.Settings(), clock);
+
+    @Test
+    void servesStaleAddressesWhileTheResolverFails() throws Exception {
+        List<InetAddress> addresses = dns.lookup("api.example.com");
+        assertThat(dns.lookup("api.example.com")).isSameAs(addresses);
+        assertThat(resolver.lookups).isEqualTo(1);
+
+        clock.add(61, TimeUnit.SECONDS);
+        resolver.failing = true;
+        assertThat(dns.lookup("api.example.com")).isSameAs(addresses);
+        assertThat(dns.lookup("api.example.com")).isSameAs(addresses);
+        assertThat(resolver.lookups).isEqualTo(2);
+
+        clock.add(Duration.ofMinutes(6));
+        assertThat(catchThrowable(() -> dns.lookup("api.example.com"))).isInstanceOf(UnknownHostException.class);
+        assertThat(catchThrowable(() -> dns.lookup("api.example.com"))).isInstanceOf(UnknownHostException.class);
+
+        assertThat(cacheRequests("HIT")).isEqualTo(1.0);
+        assertThat(cacheRequests("MISS")).isEqualTo(3.0);
+        assertThat(cacheRequests("STALE")).isEqualTo(2.0);
+        assertThat(cacheRequests("NEGATIVE_HIT")).isEqualTo(1.0);
+    }
+
+    @Test
+    void refreshesInTheBackgroundBeforeExpiry() throws Exception {
+        dns.lookup("api.example.com");
+        clock.add(46, TimeUnit.SECONDS);
+        dns.lookup("api.example.com");
+
+        for (int i = 0; i < 100 && resolver.lookups < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(resolver.lookups).isEqualTo(2);
+        assertThat(cacheRequests("MISS")).isEqualTo(1.0);
+        dns.close();
+    }
+
+    @Test
+    void foldsTheDomainsPastMaxEntries() throws Exception {
+        InstrumentedDns.Settings settings = new InstrumentedDns.Settings();
+        settings.setMaxEntries(2);
+        InstrumentedDns bounded = new InstrumentedDns(registry, resolver, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+                Collections.emptyList(), settings, clock);
+
+        bounded.lookup("a.example.com");
+        bounded.lookup("b.example.com");
+        bounded.lookup("c.example.com");
+        bounded.lookup("d.example.com");
+
+        assertThat(registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + InstrumentedDns.METRIC_NAME_DNS_CACHE_REQUESTS)
+                .tag("result", "MISS").counters().size()).isEqualTo(3);
+        assertThat(registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + InstrumentedDns.METRIC_NAME_DNS_CACHE_REQUESTS)
+                .tags("result", "MISS", "domain", CardinalityLimitMeterFilter.OTHER).counter().count()).isEqualTo(2.0);
+        bounded.close();
+    }
+
+    private double cacheRequests(String result) {
+        return registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX + InstrumentedDns.METRIC_NAME_DNS_CACHE_REQUESTS)
+                .tag("result", result).counter().count();
+    }
+
+    static final class StubDns implements Dns {
+
+        volatile int lookups;
+        volatile boolean failing;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            lookups++;
+            if (failing) {
+                throw new UnknownHostException(hostname);
+            }
+            return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{10, 0, 0, 1}));
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Timings driven by a {@link MockClock}, so sub-millisecond durations are asserted exactly.
+ */
+class InstrumentedInterceptorTests {
+
+    private final MockClock clock = new MockClock();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+
+    private final Request request = new Request.Builder().url("http://sidecar.local/users/8812").build();
+
+    @Test
+    void recordsSubMillisecondNetworkRequests() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new InstrumentedInterceptor(registry, OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX,
+                        Collections.emptyList(), clock))
+                .addInterceptor(chain -> {
+                    clock.add(350, TimeUnit.MICROSECONDS);
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(MediaType.get("text/plain"), "ok"))
+                            .build();
+                })
+                .build();
+
+        client.newCall(request).execute().close();
+
+        assertThat(registry.get(OkHttp3Metrics.OKHTTP3_METRIC_NAME_PREFIX
+                + InstrumentedInterceptor.METRIC_NAME_NETWORK_REQUESTS_DURATION).timer()
+                .totalTime(TimeUnit.MICROSECONDS)).isEqualTo(350);
+    }
+
+    @Test
+    void recordsCallPhasesWithTheGivenClock() {
+        Call call = new OkHttpClient().newCall(request);
+        EventListener listener = new InstrumentedEventListenerFactory(registry, clock, null).create(call);
+
+        listener.callStart(call);
+        clock.add(120, TimeUnit.MICROSECONDS);
+        listener.requestHeadersStart(call);
+        clock.add(30, TimeUnit.MICROSECONDS);
+        listener.requestHeadersEnd(call, request);
+        clock.add(500, TimeUnit.MICROSECONDS);
+        listener.responseHeadersStart(call);
+        clock.add(50, TimeUnit.MICROSECONDS);
+        listener.callEnd(call);
+
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_CALLS_DURATION).timer()
+                .totalTime(TimeUnit.MICROSECONDS)).isEqualTo(700);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_REQUESTS_WRITE_DURATION).timer()
+                .totalTime(TimeUnit.MICROSECONDS)).isEqualTo(30);
+        assertThat(registry.get(OkHttp3Metrics.METRIC_NAME_RESPONSES_FIRST_BYTE_DURATION).timer()
+                .totalTime(TimeUnit.MICROSECONDS)).isEqualTo(500);
+    }
+
+}
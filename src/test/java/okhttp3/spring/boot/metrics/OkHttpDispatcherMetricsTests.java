@@ -0,0 +1,74 @@
+package okhttp3.spring.boot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OkHttpDispatcherMetricsTests {
+
+    private static final String THREADS = OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX
+            + OkHttpDispatcherMetrics.METRIC_NAME_DISPATCHER_EXECUTOR_THREADS;
+    private static final String ACTIVE = OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX
+            + OkHttpDispatcherMetrics.METRIC_NAME_DISPATCHER_EXECUTOR_ACTIVE;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void publishesTheThreadsOfTheDefaultPool() throws InterruptedException {
+        OkHttpClient client = new OkHttpClient();
+        new OkHttpDispatcherMetrics(client).bindTo(registry);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        client.dispatcher().executorService().execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        running.await();
+
+        assertThat(registry.get(THREADS).gauge().value()).isEqualTo(1);
+        assertThat(registry.get(ACTIVE).gauge().value()).isEqualTo(1);
+        release.countDown();
+        client.dispatcher().executorService().shutdown();
+    }
+
+    @Test
+    void looksThroughAnInstrumentedExecutor() throws InterruptedException {
+        ExecutorService tasks = new TaskCountingExecutor(Executors.newSingleThreadExecutor());
+        Dispatcher dispatcher = InstrumentedDispatcherExecutor.instrument(new Dispatcher(tasks), registry,
+                OkHttp3Metrics.OKHTTP3_POOL_METRIC_NAME_PREFIX, Tags.empty());
+        OkHttpClient client = new OkHttpClient.Builder().dispatcher(dispatcher).build();
+        new OkHttpDispatcherMetrics(client).bindTo(registry);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.executorService().execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        running.await();
+
+        assertThat(registry.get(THREADS).gauge().value()).isEqualTo(1);
+        assertThat(registry.get(ACTIVE).gauge().value()).isEqualTo(1);
+        release.countDown();
+        tasks.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package okhttp3.spring.boot.metrics;
+
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriTemplateMapperTests {
+
+    private final UriTemplateMapper mapper = new UriTemplateMapper(Arrays.asList(
+            "/users/{id}/orders/{id}",
+            "/users/me/orders/{id}",
+            "/files/{name}"));
+
+    @Test
+    void matchesTemplatesPreferringLiteralSegments() {
+        assertThat(map("/users/8812/orders/99")).isEqualTo("/users/{id}/orders/{id}");
+        assertThat(map("/users/me/orders/99")).isEqualTo("/users/me/orders/{id}");
+        assertThat(map("/files/report.pdf")).isEqualTo("/files/{name}");
+    }
+
+    @Test
+    void collapsesIdentifiersOfUnmatchedPaths() {
+        assertThat(map("/accounts/8812")).isEqualTo("/accounts/{id}");
+        assertThat(map("/sessions/3f2b8c1e-9d4a-4b7e-a1c2-0e5f6d7a8b9c/keys"))
+                .isEqualTo("/sessions/{uuid}/keys");
+        assertThat(map("/commits/9fceb02d0ae598e95dc970b74767f19372d61af8")).isEqualTo("/commits/{hex}");
+        assertThat(map("/decade/facade")).isEqualTo("/decade/facade");
+        assertThat(map("/")).isEqualTo("/");
+        assertThat(map("/users/8812/")).isEqualTo("/users/{id}/");
+    }
+
+    @Test
+    void boundsTheCache() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, UriTemplateMapper::collapse);
+        cache.get("1");
+        cache.get("2");
+        cache.get("3");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(new UriTemplateMapper(Collections.emptyList(), 0).apply(request("/users/1"))).isEqualTo("/users/{id}");
+    }
+
+    private String map(String path) {
+        return mapper.apply(request(path));
+    }
+
+    private static Request request(String path) {
+        return new Request.Builder().url("http://localhost" + path).build();
+    }
+
+}